@@ -0,0 +1,126 @@
+package org.rdswitchboard.exporters.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.rdswitchboard.exporters.graph.generator.Generator;
+import org.rdswitchboard.exporters.graph.source.GraphSource;
+import org.rdswitchboard.exporters.graph.source.Neo4jSource;
+
+/**
+ * Shared benchmark state: synthetic graph source, configured exporter and the sample of root nodes
+ *
+ * The graph is generated once per trial, either into a Neo4j store in a temporary folder,
+ * which is deleted after the trial, or in memory.
+ * With non zero cacheSize or fragmentCacheSize (in megabytes) the exporter uses the node
+ * or the fragment cache, which stays warm between iterations. Non zero supernodeDegree
+ * enables supernode handling, see {@link Exporter#setSupernodeDegree(int)}.
+ *
+ * @version 1.2.0
+ */
+
+@State(Scope.Benchmark)
+public class GraphState {
+	public static final String SOURCE_NEO4J = "neo4j";
+	public static final String SOURCE_MEMORY = "memory";
+
+	private static final int SAMPLE_SIZE = 1024;
+
+	@Param({SOURCE_NEO4J, SOURCE_MEMORY})
+	public String source;
+
+	@Param({"10000"})
+	public int nodes;
+
+	@Param({Generator.DEGREES_UNIFORM, Generator.DEGREES_POWER_LAW})
+	public String degrees;
+
+	@Param({"4"})
+	public double averageDegree;
+
+	@Param({"0", "10"})
+	public int hubs;
+
+	@Param({"0.1"})
+	public double hubShare;
+
+	@Param({"2"})
+	public int maxLevel;
+
+	@Param({"0", "64"})
+	public long cacheSize;
+
+	@Param({"0"})
+	public long fragmentCacheSize;
+
+	@Param({"0"})
+	public int supernodeDegree;
+
+	@Param({"0"})
+	public int supernodeRelationships;
+
+	GraphSource graphSource;
+	Exporter exporter;
+	Map<Label, Configuration> sources;
+	long[] roots;
+
+	private File folder;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException, Neo4jException {
+		Generator generator = new Generator();
+		generator.setNodes(nodes);
+		generator.setDegrees(degrees);
+		generator.setAverageDegree(averageDegree);
+		generator.setHubs(hubs);
+		generator.setHubShare(hubShare);
+
+		if (SOURCE_MEMORY.equals(source))
+			graphSource = generator.generateInMemory();
+		else {
+			folder = Files.createTempDirectory("graph").toFile();
+			generator.setNeo4jFolder(folder.getPath());
+			generator.generate();
+
+			graphSource = new Neo4jSource(new GraphDatabaseFactory().newEmbeddedDatabase(Exporter.GetDbPath(folder.getPath())));
+		}
+
+		exporter = new Exporter();
+		exporter.setMaxLevel(maxLevel);
+		exporter.setMaxNodes(100);
+		exporter.setMaxSiblings(10);
+		exporter.setCacheSize(cacheSize);
+		exporter.setFragmentCacheSize(fragmentCacheSize);
+		exporter.setSupernodeDegree(supernodeDegree);
+		exporter.setSupernodeRelationships(supernodeRelationships);
+		exporter.setGraphSource(graphSource);
+
+		sources = App.createSources();
+
+		// the same random sample of nodes, including hubs, is used by all benchmarks.
+		// Generated nodes have sequential ID's, starting from 0
+		roots = new long[SAMPLE_SIZE];
+		Random random = new Random(SAMPLE_SIZE);
+		for (int i = 0; i < roots.length; ++i)
+			roots[i] = i < hubs ? i : random.nextInt(nodes);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		graphSource.close();
+		if (null != folder)
+			FileUtils.deleteDirectory(folder);
+	}
+}
@@ -0,0 +1,48 @@
+package org.rdswitchboard.exporters.graph;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the neighbourhood extraction around a root node
+ *
+ * @version 1.0.0
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NeighbourhoodBenchmark {
+
+	/**
+	 * Traversal only
+	 */
+	@Benchmark
+	public int extract(GraphState graph, TraversalState state) {
+		graph.exporter.extractNeighbourhood(state.nextRoot(graph), state.neighbourhood);
+
+		return state.neighbourhood.size();
+	}
+
+	/**
+	 * Traversal and writing of the document, as the export worker does it
+	 */
+	@Benchmark
+	public int extractAndWrite(GraphState graph, TraversalState state) throws IOException {
+		long root = state.nextRoot(graph);
+		graph.exporter.extractNeighbourhood(root, state.neighbourhood);
+		graph.exporter.writeGraph(root, state.neighbourhood, state.writer);
+
+		return state.writer.getSize();
+	}
+}
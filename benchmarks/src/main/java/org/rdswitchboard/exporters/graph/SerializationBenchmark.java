@@ -0,0 +1,135 @@
+package org.rdswitchboard.exporters.graph;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.rdswitchboard.exporters.graph.source.Edge;
+import org.rdswitchboard.exporters.graph.source.GraphSource;
+import org.researchgraph.exporters.graph.json.GraphFormat;
+import org.researchgraph.exporters.graph.json.JsonGraph;
+import org.researchgraph.exporters.graph.json.JsonGraphWriter;
+import org.researchgraph.exporters.graph.json.JsonNode;
+import org.researchgraph.exporters.graph.json.JsonRelationship;
+
+/**
+ * Benchmarks of JSON serialization of already extracted graphs
+ *
+ * Compares ObjectMapper serialization of {@link JsonGraph} with the streaming writer
+ * and the streaming writer of binary Smile and CBOR formats.
+ *
+ * @version 1.1.0
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+	private static final String PROPERTY_TYPE = "type";
+
+	/**
+	 * Graphs of all sampled root nodes
+	 */
+	@State(Scope.Benchmark)
+	public static class Graphs {
+		List<JsonGraph> graphs = new ArrayList<JsonGraph>();
+
+		@Setup(Level.Trial)
+		public void setup(GraphState graph) {
+			Neighbourhood neighbourhood = new Neighbourhood();
+			try (GraphSource.Session session = graph.graphSource.begin()) {
+				for (long root : graph.roots) {
+					graph.exporter.extractNeighbourhood(root, neighbourhood);
+					graphs.add(toJsonGraph(graph.graphSource, root, neighbourhood));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Per thread writers of binary formats
+	 */
+	@State(Scope.Thread)
+	public static class BinaryWriters {
+		final JsonGraphWriter smile = GraphFormat.get(GraphFormat.SMILE).createWriter();
+		final JsonGraphWriter cbor = GraphFormat.get(GraphFormat.CBOR).createWriter();
+	}
+
+	@Benchmark
+	public byte[] objectMapper(Graphs graphs, TraversalState state) throws IOException {
+		return state.mapper.writeValueAsBytes(graphs.graphs.get(state.nextIndex(graphs.graphs.size())));
+	}
+
+	@Benchmark
+	public int jsonGraphWriter(Graphs graphs, TraversalState state) throws IOException {
+		state.writer.write(graphs.graphs.get(state.nextIndex(graphs.graphs.size())));
+
+		return state.writer.getSize();
+	}
+
+	@Benchmark
+	public int smileWriter(Graphs graphs, BinaryWriters writers, TraversalState state) throws IOException {
+		writers.smile.write(graphs.graphs.get(state.nextIndex(graphs.graphs.size())));
+
+		return writers.smile.getSize();
+	}
+
+	@Benchmark
+	public int cborWriter(Graphs graphs, BinaryWriters writers, TraversalState state) throws IOException {
+		writers.cbor.write(graphs.graphs.get(state.nextIndex(graphs.graphs.size())));
+
+		return writers.cbor.getSize();
+	}
+
+	private static JsonGraph toJsonGraph(GraphSource source, long rootId, Neighbourhood neighbourhood) {
+		JsonGraph graph = new JsonGraph();
+
+		neighbourhood.sortNodes();
+		for (int i = 0; i < neighbourhood.getNodes().size(); ++i) {
+			long node = neighbourhood.getNodes().get(i);
+			JsonNode jsonNode = new JsonNode();
+			jsonNode.setId(node);
+			jsonNode.setType((String) source.getProperty(node, PROPERTY_TYPE));
+			for (Map.Entry<String, Object> property : source.getProperties(node).entrySet())
+				jsonNode.addProperty(property.getKey(), property.getValue());
+
+			for (Edge relationship : source.getEdges(node)) {
+				long other = relationship.getOther(node);
+				if (!neighbourhood.contains(other))
+					jsonNode.addExtra(JsonNode.EXTRA_INCOMPLETE);
+				else if (relationship.getStart() == node) {
+					JsonRelationship jsonRelationship = new JsonRelationship();
+					jsonRelationship.setId(relationship.getId());
+					jsonRelationship.setFrom(node);
+					jsonRelationship.setTo(other);
+					jsonRelationship.setType(relationship.getType());
+					graph.addRelationship(jsonRelationship);
+				}
+			}
+
+			if (node == rootId)
+				jsonNode.addExtra(JsonNode.EXTRA_ROOT);
+
+			graph.addNode(jsonNode);
+		}
+
+		graph.sort();
+
+		return graph;
+	}
+}
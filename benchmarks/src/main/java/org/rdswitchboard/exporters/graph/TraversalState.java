@@ -0,0 +1,60 @@
+package org.rdswitchboard.exporters.graph;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.rdswitchboard.exporters.graph.source.GraphSource;
+import org.researchgraph.exporters.graph.json.JsonGraphWriter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Per thread benchmark state: read session and reusable objects, owned by an export worker
+ *
+ * The session is kept open for the whole iteration, the same way as a worker keeps it open for a range of nodes.
+ *
+ * @version 1.1.0
+ */
+
+@State(Scope.Thread)
+public class TraversalState {
+	final ObjectMapper mapper = new ObjectMapper();
+	final Neighbourhood neighbourhood = new Neighbourhood();
+	final JsonGraphWriter writer = new JsonGraphWriter(mapper.getFactory());
+
+	private GraphSource.Session session;
+	private int next;
+
+	@Setup(Level.Iteration)
+	public void begin(GraphState graph) {
+		session = graph.graphSource.begin();
+	}
+
+	@TearDown(Level.Iteration)
+	public void end() {
+		session.close();
+	}
+
+	/**
+	 * Function to return the next root node from the sample
+	 * @param graph GraphState
+	 * @return Node ID
+	 */
+	long nextRoot(GraphState graph) {
+		return graph.roots[nextIndex(graph.roots.length)];
+	}
+
+	/**
+	 * Function to return the next index, cycling through a sample
+	 * @param size Sample size
+	 * @return int
+	 */
+	int nextIndex(int size) {
+		if (next >= size)
+			next = 0;
+
+		return next++;
+	}
+}
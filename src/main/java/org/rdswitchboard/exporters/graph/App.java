@@ -53,6 +53,21 @@ public class App {
 		}
 	}
 	
+	/**
+	 * Function to create configuration of exported sources
+	 * @return Map of source label to source configuration
+	 */
+	static Map<Label, Configuration> createSources() {
+		Map<Label, Configuration> sources = new HashMap<>();
+		sources.put(NodeSource.ands, new Configuration(new Label[] { NodeType.dataset, NodeType.researcher, NodeType.publication, NodeType.institution }, null, PROPERTY_LOCAL_ID));
+		sources.put(NodeSource.dara, new Configuration(new Label[] { NodeType.dataset, NodeType.researcher, NodeType.publication, NodeType.institution }, null, PROPERTY_DOI));
+		sources.put(NodeSource.nci, new Configuration(new Label[] { NodeType.dataset, NodeType.publication }, null, PROPERTY_LOCAL_ID));
+		sources.put(NodeSource.gesis, new Configuration(new Label[] { NodeType.dataset, NodeType.publication }, null, PROPERTY_LOCAL_ID));
+		sources.put(NodeSource.orcid, new Configuration(new Label[] { NodeType.researcher }, null, PROPERTY_ORCID_ID));
+		
+		return sources;
+	}
+	
 	public static void main(String[] args) {
 		try {
 			
@@ -67,13 +82,44 @@ public class App {
 			String sourceNeo4jFolder = properties.getProperty("neo4j", "neo4j");
 			
 			String outputFolder = properties.getProperty("output");
+			String outputFormat = properties.getProperty("output.format", "json");
+			String outputMode = properties.getProperty("output.mode", Exporter.OUTPUT_MODE_FILES);
+			long ndjsonSize = Long.parseLong(properties.getProperty("ndjson.size", "1024"));
+			boolean outputAtomic = Boolean.parseBoolean(properties.getProperty("output.atomic", "false"));
+			String compression = properties.getProperty("compression", "none");
+			long shardSize = Long.parseLong(properties.getProperty("shard.size", "0"));
+			int shardDocuments = Integer.parseInt(properties.getProperty("shard.documents", "0"));
+			int compressionLevel = Integer.parseInt(properties.getProperty("compression.level", "0"));
+			String manifestFile = properties.getProperty("manifest");
+			boolean skipUnchanged = Boolean.parseBoolean(properties.getProperty("skip.unchanged", "false"));
+			String checkpointFile = properties.getProperty("checkpoint");
+			int checkpointInterval = Integer.parseInt(properties.getProperty("checkpoint.interval", "60"));
+			boolean resume = Boolean.parseBoolean(properties.getProperty("resume", "false"));
+			int progressInterval = Integer.parseInt(properties.getProperty("progress.interval", "10"));
+			String metricsFile = properties.getProperty("metrics.file");
+			String metricsFormat = properties.getProperty("metrics.format", "json");
+			int metricsInterval = Integer.parseInt(properties.getProperty("metrics.interval", "60"));
+			long cacheSize = Long.parseLong(properties.getProperty("cache.size", "0"));
+			long fragmentCacheSize = Long.parseLong(properties.getProperty("fragment.cache.size", "0"));
+			String snapshotFolder = properties.getProperty("snapshot");
+			String degreeIndexFile = properties.getProperty("degree.index");
 			String s3Bucket = properties.getProperty("s3.bucket");
+			String s3Format = properties.getProperty("s3.format", "json");
 			String s3Key = properties.getProperty("s3.key");
 			boolean s3Public = Boolean.parseBoolean(properties.getProperty("s3.public", "false"));
+			int s3Threads = Integer.parseInt(properties.getProperty("s3.threads", "4"));
+			int s3QueueSize = Integer.parseInt(properties.getProperty("s3.queue", "100"));
+			int s3Retries = Integer.parseInt(properties.getProperty("s3.retries", "3"));
+			boolean s3CheckETag = Boolean.parseBoolean(properties.getProperty("s3.etag", "false"));
 		
 			int maxLevel = Integer.parseInt(properties.getProperty("max.level", "2"));
 			int maxNodes = Integer.parseInt(properties.getProperty("max.nodes", "100"));
 			int maxSiblings = Integer.parseInt(properties.getProperty("max.siblings", "10"));
+			int supernodeDegree = Integer.parseInt(properties.getProperty("supernode.degree", "0"));
+			int supernodeRelationships = Integer.parseInt(properties.getProperty("supernode.relationships", "0"));
+			int threads = Integer.parseInt(properties.getProperty("threads", "1"));
+			int rangeSize = Integer.parseInt(properties.getProperty("range.size", "10000"));
+			int transactionSize = Integer.parseInt(properties.getProperty("transaction.size", "10000"));
 
 			int testNodeId = Integer.parseInt(properties.getProperty("test.node.id", "0"));
 			
@@ -86,27 +132,59 @@ public class App {
 				System.exit(1);
 			}
 			
-	        Map<Label, Configuration> sources = new HashMap<>();
-	        sources.put(NodeSource.ands, new Configuration(new Label[] { NodeType.dataset, NodeType.researcher, NodeType.publication, NodeType.institution }, null, PROPERTY_LOCAL_ID));
-	        sources.put(NodeSource.dara, new Configuration(new Label[] { NodeType.dataset, NodeType.researcher, NodeType.publication, NodeType.institution }, null, PROPERTY_DOI));
-            sources.put(NodeSource.nci, new Configuration(new Label[] { NodeType.dataset, NodeType.publication }, null, PROPERTY_LOCAL_ID));
-            sources.put(NodeSource.gesis, new Configuration(new Label[] { NodeType.dataset, NodeType.publication }, null, PROPERTY_LOCAL_ID));
-	        sources.put(NodeSource.orcid, new Configuration(new Label[] { NodeType.researcher }, null, PROPERTY_ORCID_ID));
+	        Map<Label, Configuration> sources = createSources();
 	       
 	       	Exporter exporter = new Exporter();
 	       	exporter.setNeo4jFolder(sourceNeo4jFolder);
 	       	exporter.setAwsInstanceProfileCredentials();
 	       	
-	       	if (!StringUtils.isEmpty(outputFolder)) 
+	       	if (!StringUtils.isEmpty(outputFolder)) {
 	       		exporter.setOutputFolder(outputFolder);
+	       		exporter.setOutputFormat(outputFormat);
+	       		exporter.setOutputMode(outputMode);
+	       		exporter.setNdjsonSize(ndjsonSize);
+	       		exporter.setOutputAtomic(outputAtomic);
+	       	}
 	       	if (!StringUtils.isEmpty(s3Bucket) && !StringUtils.isEmpty(s3Key)) {
 	       		exporter.setS3Bucket(s3Bucket);
 	       		exporter.setS3Key(s3Key);
 	       		exporter.enablePublicReadRights(s3Public);
+	       		exporter.setS3Threads(s3Threads);
+	       		exporter.setS3QueueSize(s3QueueSize);
+	       		exporter.setS3Retries(s3Retries);
+	       		exporter.setS3CheckETag(s3CheckETag);
+	       		exporter.setS3Format(s3Format);
 	       	}
+	       	exporter.setCompression(compression);
+	       	exporter.setCompressionLevel(compressionLevel);
+	       	exporter.setShardSize(shardSize);
+	       	exporter.setShardDocuments(shardDocuments);
+	       	if (!StringUtils.isEmpty(manifestFile))
+	       		exporter.setManifestFile(manifestFile);
+	       	exporter.setSkipUnchanged(skipUnchanged);
+	       	if (!StringUtils.isEmpty(checkpointFile))
+	       		exporter.setCheckpointFile(checkpointFile);
+	       	exporter.setCheckpointInterval(checkpointInterval);
+	       	exporter.setResume(resume);
+	       	exporter.setProgressInterval(progressInterval);
+	       	if (!StringUtils.isEmpty(metricsFile))
+	       		exporter.setMetricsFile(metricsFile);
+	       	exporter.setMetricsFormat(metricsFormat);
+	       	exporter.setMetricsInterval(metricsInterval);
+	       	exporter.setCacheSize(cacheSize);
+	       	exporter.setFragmentCacheSize(fragmentCacheSize);
+	       	if (!StringUtils.isEmpty(snapshotFolder))
+	       		exporter.setSnapshotFolder(snapshotFolder);
+	       	if (!StringUtils.isEmpty(degreeIndexFile))
+	       		exporter.setDegreeIndexFile(degreeIndexFile);
 	       	exporter.setMaxLevel(maxLevel);
 	       	exporter.setMaxNodes(maxNodes);
 	       	exporter.setMaxSiblings(maxSiblings);
+	       	exporter.setSupernodeDegree(supernodeDegree);
+	       	exporter.setSupernodeRelationships(supernodeRelationships);
+	       	exporter.setThreads(threads);
+	       	exporter.setRangeSize(rangeSize);
+	       	exporter.setTransactionSize(transactionSize);
 	       	exporter.setTestNodeId(testNodeId);
 	        exporter.process(sources);
 	        
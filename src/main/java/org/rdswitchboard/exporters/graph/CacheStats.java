@@ -0,0 +1,62 @@
+package org.rdswitchboard.exporters.graph;
+
+import org.rdswitchboard.exporters.graph.collections.LruCache;
+import org.rdswitchboard.exporters.graph.metrics.Counter;
+import org.rdswitchboard.exporters.graph.metrics.Metrics;
+
+/**
+ * Hit and miss counters of a single cache, exported as metrics
+ * 
+ * @version 1.0.0
+ */
+
+class CacheStats implements LruCache.Stats {
+	private final String name;
+	private final Counter hits;
+	private final Counter misses;
+	private final Counter evictions;
+	private final Counter rejected;
+	
+	/**
+	 * Create new counters
+	 * @param metrics Export metrics
+	 * @param name Cache name, used in metric names
+	 * @param description Description of cached values
+	 */
+	public CacheStats(Metrics metrics, String name, String description) {
+		this.name = name;
+		this.hits = metrics.counter("export_cache_" + name + "_hits_total", description + " found in the cache");
+		this.misses = metrics.counter("export_cache_" + name + "_misses_total", description + " not found in the cache");
+		this.evictions = metrics.counter("export_cache_" + name + "_evictions_total", description + " evicted from the cache");
+		this.rejected = metrics.counter("export_cache_" + name + "_rejected_total", description + " too big to be cached");
+	}
+	
+	@Override
+	public void hit() {
+		hits.increment();
+	}
+
+	@Override
+	public void miss() {
+		misses.increment();
+	}
+
+	@Override
+	public void evicted(int count) {
+		evictions.add(count);
+	}
+	
+	@Override
+	public void rejected() {
+		rejected.increment();
+	}
+	
+	@Override
+	public String toString() {
+		long hits = this.hits.get();
+		long total = hits + misses.get();
+		
+		return String.format("%s hit ratio %.1f%% (%d hits, %d misses, %d evicted, %d too big)", 
+				name, total > 0 ? hits * 100.0 / total : 0.0, hits, misses.get(), evictions.get(), rejected.get());
+	}
+}
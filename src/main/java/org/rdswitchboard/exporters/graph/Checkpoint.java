@@ -0,0 +1,204 @@
+package org.rdswitchboard.exporters.graph;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Checkpoint of the export progress
+ *
+ * Candidate nodes are exported in ranges, which can be completed in any order by
+ * different workers. The checkpoint tracks completed ranges and stores the ID of the
+ * first node, which is not in a completed range yet. All candidates with lower ID's
+ * have been exported, so the interrupted export can be resumed from that node.
+ *
+ * The checkpoint is stored as properties file:
+ *
+ *   node.id - first node ID, which has not been exported
+ *   exported - number of nodes, exported before that node
+ *   skipped - number of unchanged nodes, skipped before that node
+ *   output.file - NDJSON file, which was being written, if any
+ *   output.size - size of that file, when the checkpoint was stored
+ *
+ * @version 1.1.0
+ */
+
+public class Checkpoint {
+	private static final String PROPERTY_NODE_ID = "node.id";
+	private static final String PROPERTY_EXPORTED = "exported";
+	private static final String PROPERTY_SKIPPED = "skipped";
+	private static final String PROPERTY_OUTPUT_FILE = "output.file";
+	private static final String PROPERTY_OUTPUT_SIZE = "output.size";
+	private static final String TEMP_EXTENSION = ".tmp";
+
+	private final File file;
+
+	private long nodeId;
+	private long exported;
+	private long skipped;
+	private String outputFile;
+	private long outputSize;
+
+	private long[] candidates;
+	private int first;
+	private int rangeSize;
+	private boolean[] completed;
+	private long[] rangeExported;
+	private long[] rangeSkipped;
+	private int watermark;
+	private long saveTime;
+
+	public Checkpoint(String file) {
+		this.file = new File(file);
+	}
+
+	/**
+	 * Function to load stored checkpoint
+	 * @return true if the checkpoint has been loaded, false if it does not exists
+	 * @throws IOException
+	 */
+	public boolean load() throws IOException {
+		if (!file.exists())
+			return false;
+
+		Properties properties = new Properties();
+		try (InputStream in = new FileInputStream(file)) {
+			properties.load(in);
+		}
+
+		nodeId = Long.parseLong(properties.getProperty(PROPERTY_NODE_ID, "0"));
+		exported = Long.parseLong(properties.getProperty(PROPERTY_EXPORTED, "0"));
+		skipped = Long.parseLong(properties.getProperty(PROPERTY_SKIPPED, "0"));
+		outputFile = properties.getProperty(PROPERTY_OUTPUT_FILE);
+		outputSize = Long.parseLong(properties.getProperty(PROPERTY_OUTPUT_SIZE, "0"));
+
+		return true;
+	}
+
+	/**
+	 * Function to begin tracking of completed ranges
+	 * @param candidates Sorted array of candidate node ID's
+	 * @param first Index of the first candidate to export
+	 * @param rangeSize Number of candidates in a single range
+	 */
+	public synchronized void start(long[] candidates, int first, int rangeSize) {
+		int ranges = (candidates.length - first + rangeSize - 1) / rangeSize;
+
+		this.candidates = candidates;
+		this.first = first;
+		this.rangeSize = rangeSize;
+		this.completed = new boolean[ranges];
+		this.rangeExported = new long[ranges];
+		this.rangeSkipped = new long[ranges];
+		this.watermark = 0;
+		this.saveTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * Function to mark range as completed
+	 * @param range Range index, counting from the first candidate
+	 * @param exported Number of nodes, exported from the range
+	 * @param skipped Number of unchanged nodes, skipped in the range
+	 */
+	public synchronized void complete(int range, long exported, long skipped) {
+		completed[range] = true;
+		rangeExported[range] = exported;
+		rangeSkipped[range] = skipped;
+
+		for (; watermark < completed.length && completed[watermark]; ++watermark) {
+			this.exported += rangeExported[watermark];
+			this.skipped += rangeSkipped[watermark];
+		}
+
+		int index = first + watermark * rangeSize;
+		nodeId = index < candidates.length ? candidates[index] : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Function to test if the checkpoint should be stored
+	 * @param interval Interval between checkpoints in milliseconds
+	 * @return true if the checkpoint has not been saved for longer than interval
+	 */
+	public synchronized boolean isSaveDue(long interval) {
+		return System.currentTimeMillis() - saveTime >= interval;
+	}
+
+	/**
+	 * Function to return the current state of the checkpoint.
+	 * The state must be taken before flushing the outputs and saved after.
+	 * @return Properties
+	 */
+	public synchronized Properties getState() {
+		Properties properties = new Properties();
+		properties.setProperty(PROPERTY_NODE_ID, Long.toString(nodeId));
+		properties.setProperty(PROPERTY_EXPORTED, Long.toString(exported));
+		properties.setProperty(PROPERTY_SKIPPED, Long.toString(skipped));
+
+		saveTime = System.currentTimeMillis();
+
+		return properties;
+	}
+
+	/**
+	 * Function to record the output file in the checkpoint state. 
+	 * The file is taken after flushing the outputs
+	 * @param state Checkpoint state
+	 * @param file Output file name or null
+	 * @param size Output file size
+	 */
+	public void setOutput(Properties state, String file, long size) {
+		if (null != file) {
+			state.setProperty(PROPERTY_OUTPUT_FILE, file);
+			state.setProperty(PROPERTY_OUTPUT_SIZE, Long.toString(size));
+		}
+	}
+	
+	/**
+	 * Function to store the checkpoint state. The previous checkpoint will be replaced atomically
+	 * @param state Checkpoint state
+	 * @throws IOException
+	 */
+	public void save(Properties state) throws IOException {
+		File tempFile = new File(file.getPath() + TEMP_EXTENSION);
+		try (OutputStream out = FileUtils.openOutputStream(tempFile)) {
+			state.store(out, "Export checkpoint");
+		}
+
+		Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Function to delete the checkpoint, when the export has been completed
+	 * @throws IOException
+	 */
+	public void delete() throws IOException {
+		Files.deleteIfExists(file.toPath());
+	}
+
+	public long getNodeId() {
+		return nodeId;
+	}
+
+	public long getExported() {
+		return exported;
+	}
+
+	public long getSkipped() {
+		return skipped;
+	}
+
+	public String getOutputFile() {
+		return outputFile;
+	}
+
+	public long getOutputSize() {
+		return outputSize;
+	}
+}
@@ -1,43 +1,66 @@
 package org.rdswitchboard.exporters.graph;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URLEncoder;
-import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
-import org.apache.commons.io.FileUtils;
+import org.apache.commons.codec.binary.Hex;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
-import org.neo4j.graphdb.Node;
-import org.neo4j.graphdb.Relationship;
-import org.neo4j.graphdb.ResourceIterable;
-import org.neo4j.graphdb.ResourceIterator;
-import org.neo4j.graphdb.Transaction;
 import org.neo4j.graphdb.factory.GraphDatabaseFactory;
 import org.neo4j.graphdb.factory.GraphDatabaseSettings;
 import org.parboiled.common.StringUtils;
 import org.rdswitchboard.exporters.graph.Labels.NodeType;
-import org.researchgraph.exporters.graph.json.JsonGraph;
-import org.researchgraph.exporters.graph.json.JsonNode;
-import org.researchgraph.exporters.graph.json.JsonRelationship;
+import org.rdswitchboard.exporters.graph.collections.LongList;
+import org.rdswitchboard.exporters.graph.events.RootSpan;
+import org.rdswitchboard.exporters.graph.events.RootSpans;
+import org.rdswitchboard.exporters.graph.metrics.Counter;
+import org.rdswitchboard.exporters.graph.metrics.Histogram;
+import org.rdswitchboard.exporters.graph.metrics.Metrics;
+import org.rdswitchboard.exporters.graph.metrics.MetricsReporter;
+import org.rdswitchboard.exporters.graph.snapshot.DegreeIndex;
+import org.rdswitchboard.exporters.graph.snapshot.Snapshot;
+import org.rdswitchboard.exporters.graph.snapshot.SnapshotSource;
+import org.rdswitchboard.exporters.graph.source.Edge;
+import org.rdswitchboard.exporters.graph.source.GraphSource;
+import org.rdswitchboard.exporters.graph.source.Neo4jSource;
+import org.rdswitchboard.exporters.graph.sink.Compressor;
+import org.rdswitchboard.exporters.graph.sink.DocumentSink;
+import org.rdswitchboard.exporters.graph.sink.FileSink;
+import org.rdswitchboard.exporters.graph.sink.NdjsonSink;
+import org.rdswitchboard.exporters.graph.sink.S3Sink;
+import org.rdswitchboard.exporters.graph.sink.ShardSink;
+import org.researchgraph.exporters.graph.json.GraphFormat;
+import org.researchgraph.exporters.graph.json.JsonGraphWriter;
+import org.researchgraph.exporters.graph.json.NodeFragment;
 
+import com.amazonaws.ClientConfiguration;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.auth.InstanceProfileCredentialsProvider;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3Client;
-import com.amazonaws.services.s3.model.CannedAccessControlList;
-import com.amazonaws.services.s3.model.ObjectMetadata;
-import com.amazonaws.services.s3.model.PutObjectRequest;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
  * Export records from Nexus instance in JSON formats
@@ -45,6 +68,12 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  * with {@link Exporter#maxLevel} level siblings. Each node will be 
  * allowed to add {@link Exporter#maxSiblings} to the graph. The 
  * limits can be disabled, if 0 has been supplied
+ * 
+ * Nodes with more than {@link Exporter#supernodeDegree} relationships are
+ * supernodes. Relationships of the biggest supernode in a document are collected
+ * from the other nodes of the document instead of reading all of them. Expansion
+ * of a supernode can be limited to the first {@link Exporter#supernodeRelationships}
+ * relationships, which changes exported documents
  
  * The file name will be generated as (slug)-(record_id).json * 
  * The program will sent files directly into S3 bucket, S3 credentials 
@@ -71,36 +100,106 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 public class Exporter {
 	
-	private static final String CONTENT_ENCODING = "UTF-8";
-	private static final String CONTENT_TYPE = "application/json";
+	public static final String OUTPUT_MODE_FILES = "files";
+	public static final String OUTPUT_MODE_NDJSON = "ndjson";
+	
+	private static final String S3_ENDPOINT = "s3-us-west-2.amazonaws.com";
 	private static final String NEO4J_CONF = "/conf/neo4j.conf";
 	private static final String NEO4J_DB = "/data/databases/graph.db";
 	
 	private static final String PROPERTY_TYPE = "type";
+	private static final String DIGEST_ALGORITHM = "MD5";
+	
+	// relationship of a document node can be exported, link to a node outside of the document
+	// or be exported by the other node
+	private static final int RELATIONSHIP_EXPORTED = 0;
+	private static final int RELATIONSHIP_EXTERNAL = 1;
+	private static final int RELATIONSHIP_INTERNAL = 2;
+	
+	// per node details are logged at FINE level, disabled by default
+	private static final Logger logger = Logger.getLogger(Exporter.class.getName());
 	
 	
-	private GraphDatabaseService graphDb;
+	private GraphSource graphSource;
 
-	private long nodeCounter = 0;
+	private final AtomicLong nodeCounter = new AtomicLong();
 	
 	private boolean publicReadRights = false;
 	private long testNodeId = 0;
 	private int maxLevel = 3;
 	private int maxNodes = 100;
 	private int maxSiblings = 10;
+	private int supernodeDegree = 0;
+	private int supernodeRelationships = 0;
+	private int threads = 1;
+	private int rangeSize = 10000;
+	private int transactionSize = 10000;
+	private int s3Threads = 4;
+	private int s3QueueSize = 100;
+	private int s3Retries = 3;
 	private String s3Bucket;
 	private String s3Key;
 	private String neo4jFolder;
 	private String outputFolder;
+	private String manifestFile;
+	private boolean skipUnchanged = false;
+	private String checkpointFile;
+	private int checkpointInterval = 60;
+	private boolean resume = false;
+	private int progressInterval = 10;
+	private String metricsFile;
+	private String metricsFormat = Metrics.FORMAT_JSON;
+	private int metricsInterval = 60;
+	private long cacheSize = 0;
+	private long fragmentCacheSize = 0;
+	private String snapshotFolder;
+	private String degreeIndexFile;
+	private boolean s3CheckETag = false;
+	private String compression = Compressor.NONE;
+	private int compressionLevel = 0;
+	private String outputFormat = GraphFormat.JSON;
+	private String outputMode = OUTPUT_MODE_FILES;
+	private boolean outputAtomic = false;
+	private long ndjsonSize = 1024;
+	private String s3Format = GraphFormat.JSON;
+	private long shardSize = 0;
+	private int shardDocuments = 0;
 		
 	//private AWSCredentials awsCredentials;
 	private AmazonS3 s3client;
+	
+	private final List<DocumentSink> sinks = new ArrayList<DocumentSink>();
+	private final Map<GraphFormat, List<DocumentSink>> formatSinks = new LinkedHashMap<GraphFormat, List<DocumentSink>>();
+	private Manifest manifest;
+	private Checkpoint checkpoint;
+	private NdjsonSink ndjsonSink;
+	private Progress progress;
+	private NodeCache cache;
+	private FragmentCache fragmentCache;
+	private DegreeIndex degreeIndex;
+	
+	private final Metrics metrics = new Metrics();
+	private final Histogram validateTime = metrics.timer("export_validate_nanoseconds", "Time to test if a candidate node can be exported");
+	private final Histogram namesTime = metrics.timer("export_names_nanoseconds", "Time to generate document names");
+	private final Histogram traverseTime = metrics.timer("export_traverse_nanoseconds", "Time to extract neighbourhood of a root node");
+	private final Histogram serializeTime = metrics.timer("export_serialize_nanoseconds", "Time to read extracted nodes and write the document");
+	private final Histogram digestTime = metrics.timer("export_digest_nanoseconds", "Time to calculate document digest");
+	private final Histogram writeTime = metrics.timer("export_write_nanoseconds", "Time to pass the document to all sinks");
+	private final Histogram neighbourhoodSize = metrics.histogram("export_neighbourhood_nodes", "Number of nodes in a document", 0, 16);
+	private final Histogram documentSize = metrics.histogram("export_document_bytes", "Document size in bytes", 6, 30);
+	private final Histogram compressTime = metrics.timer("export_compress_nanoseconds", "Time to compress a document");
+	private final Histogram compressedSize = metrics.histogram("export_compressed_bytes", "Compressed document size in bytes", 6, 30);
+	private final Counter scannedCounter = metrics.counter("export_scanned_total", "Scanned candidate nodes");
+	private final Counter documentCounter = metrics.counter("export_documents_total", "Exported document names");
+	private final Counter skippedCounter = metrics.counter("export_skipped_total", "Unchanged document names, which have not been written");
+	private final Counter errorCounter = metrics.counter("export_errors_total", "Root nodes, which have failed to export");
+	private final Histogram transactionBeginTime = metrics.timer("export_transaction_begin_nanoseconds", "Time to begin a worker read transaction");
+	private final Histogram transactionCloseTime = metrics.timer("export_transaction_close_nanoseconds", "Time to close a worker read transaction");
+	private final Counter supernodeCounter = metrics.counter("export_supernodes_total", "Supernodes, relationships of which have been collected from the other document nodes");
+	private final Counter truncatedCounter = metrics.counter("export_supernodes_truncated_total", "Supernodes, expansion of which has been stopped before reading all relationships");
 		
 	//private enum NodeType { Grant, Researcher, Publication, Dataset, Institution };
 	
-	private static final ObjectMapper mapper = new ObjectMapper();
-	private static final Charset charset = Charset.forName(CONTENT_ENCODING);
-	
 	public static File GetDbPath(final String folder) throws Neo4jException, IOException
 	{
 		File db = new File(folder, NEO4J_DB);
@@ -172,11 +271,145 @@ public class Exporter {
 	 * @param secretKey
 	 */
 	public void setAwsCredentials(String accessKey, String secretKey) {
-		this.s3client = new AmazonS3Client(new BasicAWSCredentials(accessKey, secretKey));
+		this.s3client = new AmazonS3Client(new BasicAWSCredentials(accessKey, secretKey), createS3Configuration());
+		this.s3client.setEndpoint(S3_ENDPOINT);
 	}
 	
 	public void setAwsInstanceProfileCredentials() {
-		this.s3client = new AmazonS3Client(new InstanceProfileCredentialsProvider());
+//		s3client.setRegion(Region.getRegion(Regions.US_WEST_2));
+		this.s3client = new AmazonS3Client(new InstanceProfileCredentialsProvider(), createS3Configuration());
+		this.s3client.setEndpoint(S3_ENDPOINT);
+	}
+	
+	/**
+	 * Function to create S3 client configuration. Failed requests are retried by 
+	 * the S3 sink with backoff, so the client does not retry them
+	 * @return ClientConfiguration
+	 */
+	private static ClientConfiguration createS3Configuration() {
+		return new ClientConfiguration().withMaxErrorRetry(0);
+	}
+	
+	/**
+	 * Function to set checkpoint file name. 
+	 * The export progress will be stored periodically into that file
+	 * @param checkpointFile
+	 */
+	public void setCheckpointFile(String checkpointFile) {
+		this.checkpointFile = checkpointFile;
+	}
+	
+	/**
+	 * Function to set interval between checkpoints in seconds
+	 * @param checkpointInterval
+	 */
+	public void setCheckpointInterval(int checkpointInterval) {
+		this.checkpointInterval = checkpointInterval;
+	}
+	
+	/**
+	 * Function to enable resuming of the interrupted export from the last checkpoint.
+	 * Requires checkpoint file to be set
+	 * @param resume
+	 */
+	public void setResume(boolean resume) {
+		this.resume = resume;
+	}
+	
+	/**
+	 * Function to set interval between progress reports
+	 * @param progressInterval Interval in seconds, 0 to disable progress reports
+	 */
+	public void setProgressInterval(int progressInterval) {
+		this.progressInterval = progressInterval;
+	}
+	
+	/**
+	 * Function to set metrics file. The metrics will be written periodically during the export
+	 * @param metricsFile
+	 */
+	public void setMetricsFile(String metricsFile) {
+		this.metricsFile = metricsFile;
+	}
+	
+	/**
+	 * Function to set metrics file format
+	 * @param metricsFormat json or prometheus
+	 */
+	public void setMetricsFormat(String metricsFormat) {
+		this.metricsFormat = metricsFormat;
+	}
+	
+	/**
+	 * Function to set interval between metrics file updates
+	 * @param metricsInterval Interval in seconds, 0 to write metrics only at the end of the export
+	 */
+	public void setMetricsInterval(int metricsInterval) {
+		this.metricsInterval = metricsInterval;
+	}
+	
+	/**
+	 * Function to set size of node cache, shared by all export workers. 
+	 * Relationships and properties of cached nodes will not be read from Neo4j again
+	 * @param cacheSize Cache size in megabytes, 0 to disable the cache
+	 */
+	public void setCacheSize(long cacheSize) {
+		this.cacheSize = cacheSize;
+	}
+	
+	/**
+	 * Function to set size of serialized node cache, shared by all export workers. 
+	 * Cached nodes will be copied into documents without serialization
+	 * @param fragmentCacheSize Cache size in megabytes, 0 to disable the cache
+	 */
+	public void setFragmentCacheSize(long fragmentCacheSize) {
+		this.fragmentCacheSize = fragmentCacheSize;
+	}
+	
+	/**
+	 * Function to set graph snapshot folder. If set, the graph structure will be read 
+	 * from the snapshot, only node properties will be read from Neo4j
+	 * @param snapshotFolder
+	 */
+	public void setSnapshotFolder(String snapshotFolder) {
+		this.snapshotFolder = snapshotFolder;
+	}
+	
+	/**
+	 * Function to set the degree index file, created by {@link org.rdswitchboard.exporters.graph.snapshot.SnapshotApp}.
+	 * If set, node degrees will be read from the index instead of the graph source
+	 * @param degreeIndexFile
+	 */
+	public void setDegreeIndexFile(String degreeIndexFile) {
+		this.degreeIndexFile = degreeIndexFile;
+	}
+	
+	/**
+	 * Function to set the source of the exported graph. If not set, the export will open
+	 * Neo4j instance located in {@link Exporter#neo4jFolder} and the snapshot, if configured.
+	 * Enabled caches will be created, the cache size must be set before the source
+	 * @param graphSource GraphSource, which will not be closed by the exporter
+	 */
+	public void setGraphSource(GraphSource graphSource) {
+		this.cache = cacheSize > 0 ? new NodeCache(graphSource, cacheSize * 1024 * 1024, metrics) : null;
+		this.graphSource = null != cache ? cache : graphSource;
+		this.fragmentCache = fragmentCacheSize > 0 ? new FragmentCache(fragmentCacheSize * 1024 * 1024, metrics) : null;
+	}
+	
+	/**
+	 * Function to return export metrics
+	 * @return Metrics
+	 */
+	public Metrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Function to set S3 client, for example connected to S3 compatible storage
+	 * @param s3client
+	 */
+	public void setS3Client(AmazonS3 s3client) {
+		this.s3client = s3client;
 	}
 	
 	/**
@@ -219,6 +452,181 @@ public class Exporter {
 		this.maxSiblings = maxSiblings;
 	}
 	
+	/**
+	 * Function to set minimal number of relationships of a supernode, 0 to disable supernode handling.
+	 * Self relationships of supernodes will not be exported
+	 * @param supernodeDegree
+	 */
+	public void setSupernodeDegree(int supernodeDegree) {
+		this.supernodeDegree = supernodeDegree;
+	}
+	
+	/**
+	 * Function to set maximum number of relationships, read while expanding a supernode, 
+	 * 0 to read all relationships
+	 * @param supernodeRelationships
+	 */
+	public void setSupernodeRelationships(int supernodeRelationships) {
+		this.supernodeRelationships = supernodeRelationships;
+	}
+	
+	/**
+	 * Function to set number of S3 uploader threads
+	 * @param s3Threads
+	 */
+	public void setS3Threads(int s3Threads) {
+		this.s3Threads = s3Threads;
+	}
+	
+	/**
+	 * Function to set maximum number of documents, waiting for S3 upload
+	 * @param s3QueueSize
+	 */
+	public void setS3QueueSize(int s3QueueSize) {
+		this.s3QueueSize = s3QueueSize;
+	}
+	
+	/**
+	 * Function to set number of retries for failed S3 uploads
+	 * @param s3Retries
+	 */
+	public void setS3Retries(int s3Retries) {
+		this.s3Retries = s3Retries;
+	}
+	
+	/**
+	 * Function to enable S3 ETag check. If enabled, objects having the same content 
+	 * as the exported document will not be uploaded again
+	 * @param s3CheckETag
+	 */
+	public void setS3CheckETag(boolean s3CheckETag) {
+		this.s3CheckETag = s3CheckETag;
+	}
+	
+	/**
+	 * Function to set compression of exported documents: none, gzip or zstd
+	 * @param compression
+	 */
+	public void setCompression(String compression) {
+		this.compression = compression;
+	}
+	
+	/**
+	 * Function to set compression level, 0 for the default level of the compression
+	 * @param compressionLevel
+	 */
+	public void setCompressionLevel(int compressionLevel) {
+		this.compressionLevel = compressionLevel;
+	}
+	
+	/**
+	 * Function to set formats of documents, written into the output folder
+	 * @param outputFormat comma separated list of json, smile and cbor
+	 */
+	public void setOutputFormat(String outputFormat) {
+		this.outputFormat = outputFormat;
+	}
+	
+	/**
+	 * Function to set how documents are written into the output folder: 
+	 * files - a file per document name, ndjson - a line per document in large rolling files
+	 * @param outputMode files or ndjson
+	 */
+	public void setOutputMode(String outputMode) {
+		this.outputMode = outputMode;
+	}
+	
+	/**
+	 * Function to enable atomic writes into the output folder. Every file will be written
+	 * under a temporary name and renamed when it is complete, so readers never see partial files
+	 * @param outputAtomic
+	 */
+	public void setOutputAtomic(boolean outputAtomic) {
+		this.outputAtomic = outputAtomic;
+	}
+	
+	/**
+	 * Function to set maximum size of NDJSON file
+	 * @param ndjsonSize Size in MB
+	 */
+	public void setNdjsonSize(long ndjsonSize) {
+		this.ndjsonSize = ndjsonSize;
+	}
+	
+	/**
+	 * Function to set formats of documents, uploaded into S3 bucket
+	 * @param s3Format comma separated list of json, smile and cbor
+	 */
+	public void setS3Format(String s3Format) {
+		this.s3Format = s3Format;
+	}
+	
+	/**
+	 * Function to set maximum size of a shard. Documents will be packed into shards, 
+	 * if the shard size or the number of shard documents has been set
+	 * @param shardSize Size in MB, 0 to disable
+	 */
+	public void setShardSize(long shardSize) {
+		this.shardSize = shardSize;
+	}
+	
+	/**
+	 * Function to set maximum number of documents in a shard
+	 * @param shardDocuments Number of documents, 0 to disable
+	 */
+	public void setShardDocuments(int shardDocuments) {
+		this.shardDocuments = shardDocuments;
+	}
+	
+	/**
+	 * Function to add custom document sink. 
+	 * The sink will receive all exported JSON documents in addition to output folder and S3 bucket
+	 * @param sink
+	 */
+	public void addSink(DocumentSink sink) {
+		addSink(sink, Arrays.asList(GraphFormat.get(GraphFormat.JSON)));
+	}
+	
+	/**
+	 * Function to add custom document sink, receiving documents in the given formats
+	 * @param sink
+	 * @param formats
+	 */
+	public void addSink(DocumentSink sink, List<GraphFormat> formats) {
+		this.sinks.add(sink);
+		for (GraphFormat format : formats) {
+			List<DocumentSink> list = formatSinks.get(format);
+			if (null == list)
+				formatSinks.put(format, list = new ArrayList<DocumentSink>());
+			list.add(sink);
+		}
+	}
+	
+	/**
+	 * Function to set number of export worker threads
+	 * @param threads
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+	
+	/**
+	 * Function to set number of candidate nodes, processed by a worker at once
+	 * @param rangeSize
+	 */
+	public void setRangeSize(int rangeSize) {
+		this.rangeSize = rangeSize;
+	}
+	
+	/**
+	 * Function to set number of candidate nodes, scanned by a worker in one read transaction,
+	 * 0 to use one transaction for the whole export
+	 * @param transactionSize
+	 */
+	public void setTransactionSize(int transactionSize) {
+		this.transactionSize = transactionSize;
+	}
+	
 	/**
 	 * Function to add exporting label
 	 * @param label
@@ -232,6 +640,26 @@ public class Exporter {
 		return outputFolder;
 	}
 	
+	/**
+	 * Function to set manifest file name. 
+	 * The manifest will map every exported name to the canonical document name
+	 * @param manifestFile
+	 */
+	public void setManifestFile(String manifestFile) {
+		this.manifestFile = manifestFile;
+	}
+	
+	/**
+	 * Function to enable skipping of unchanged documents. 
+	 * The document will not be written, if the manifest from the previous export 
+	 * contains the same names and the same content digest for it.
+	 * Requires manifest file to be set.
+	 * @param skipUnchanged
+	 */
+	public void setSkipUnchanged(boolean skipUnchanged) {
+		this.skipUnchanged = skipUnchanged;
+	}
+	
 	
 	public long getTestNodeId() {
 		return testNodeId;
@@ -266,64 +694,533 @@ public class Exporter {
 		System.out.println("Export level: " + maxLevel);
 		System.out.println("Max nodes: " + maxNodes);
 		System.out.println("Max siblings: " + maxSiblings);
+		System.out.println("Supernode degree: " + (supernodeDegree > 0 ? supernodeDegree : "disabled"));
+		System.out.println("Supernode relationships: " + (supernodeDegree > 0 && supernodeRelationships > 0 ? supernodeRelationships : "all"));
+		System.out.println("Threads: " + threads);
+		System.out.println("Output mode: " + outputMode + (OUTPUT_MODE_NDJSON.equals(outputMode) ? ", " + ndjsonSize + " MB files" : ""));
+		System.out.println("Output format: " + outputFormat);
+		System.out.println("Atomic output: " + outputAtomic);
+		System.out.println("S3 format: " + s3Format);
+		System.out.println("Shards: " + (isSharded() ? (shardSize > 0 ? shardSize + " MB" : "unlimited size") 
+				+ ", " + (shardDocuments > 0 ? shardDocuments + " documents" : "unlimited documents") : "disabled"));
+		System.out.println("Compression: " + compression + (compressionLevel > 0 ? ", level " + compressionLevel : ""));
+		System.out.println("Transaction size: " + (transactionSize > 0 ? transactionSize + " nodes" : "unlimited"));
+		System.out.println("Node cache: " + (cacheSize > 0 ? cacheSize + " MB" : "disabled"));
+		System.out.println("Fragment cache: " + (fragmentCacheSize > 0 ? fragmentCacheSize + " MB" : "disabled"));
+		System.out.println("Snapshot: " + (StringUtils.isEmpty(snapshotFolder) ? "disabled" : snapshotFolder));
+		System.out.println("Degree index: " + (StringUtils.isEmpty(degreeIndexFile) ? "disabled" : degreeIndexFile));
+		System.out.println("JFR events: " + (RootSpans.isAvailable() ? "available" : "not available"));
+		
+		// fail before the export, if the compression is unknown or not available
+		try {
+			Compressor compressor = Compressor.create(compression, compressionLevel);
+			if (null != compressor)
+				compressor.close();
+		} catch (IllegalArgumentException | LinkageError e) {
+			throw new Neo4jException("Unable to create " + compression + " compressor. Error: " + e.getMessage());
+		}
+		
+		List<GraphFormat> outputFormats;
+		List<GraphFormat> s3Formats;
+		try {
+			outputFormats = GraphFormat.parse(outputFormat);
+			s3Formats = GraphFormat.parse(s3Format);
+		} catch (IllegalArgumentException e) {
+			throw new Neo4jException("Invalid document format. Error: " + e.getMessage());
+		}
+		
+		// NDJSON lines embed the document, so it must be plain JSON
+		boolean ndjson = OUTPUT_MODE_NDJSON.equals(outputMode);
+		if (!ndjson && !OUTPUT_MODE_FILES.equals(outputMode))
+			throw new Neo4jException("Unknown output mode: " + outputMode);
+		if (ndjson && !StringUtils.isEmpty(outputFolder)) {
+			if (!Compressor.NONE.equals(compression))
+				throw new Neo4jException("NDJSON output can not be used with " + compression + " compression");
+			if (outputFormats.size() != 1 || !outputFormats.get(0).isJson())
+				throw new Neo4jException("NDJSON output can only be used with json format");
+			if (ndjsonSize <= 0)
+				throw new Neo4jException("NDJSON file size must be positive");
+		}
+		
+		GraphSource openedSource = null;
+		MetricsReporter metricsReporter = null;
+		
+		// everything opened below is closed in the finally block, even if the setup fails
+		try {
+			if (null == graphSource)
+				setGraphSource(openedSource = openGraphSource());
+			
+			if (!StringUtils.isEmpty(degreeIndexFile)) {
+				try {
+					degreeIndex = DegreeIndex.open(new File(degreeIndexFile));
+				} catch (IOException e) {
+					throw new Neo4jException("Unable to open degree index: " + degreeIndexFile + ". Error: " + e.getMessage());
+				}
+			
+				System.out.println(String.format("Degree index of %d node ID's, created %tF %<tT", 
+						degreeIndex.getNodes(), degreeIndex.getCreated()));
+			}
+			
+			if (supernodeDegree > 0 && !hasSupernodes())
+				System.out.println("Supernodes are not handled: node degrees require degree index or snapshot");
+			
+			boolean resumed = false;
+			if (!StringUtils.isEmpty(checkpointFile)) {
+				checkpoint = new Checkpoint(checkpointFile);
+				try {
+					resumed = resume && checkpoint.load();
+				} catch (IOException e) {
+					throw new Neo4jException("Unable to load checkpoint file: " + checkpointFile + ". Error: " + e.getMessage());
+				}
+			}
+			
+			if (!StringUtils.isEmpty(manifestFile)) {
+				try {
+					manifest = new Manifest(manifestFile, skipUnchanged, resumed);
+				} catch (IOException e) {
+					throw new Neo4jException("Unable to create manifest file: " + manifestFile + ". Error: " + e.getMessage());
+				}
+			}
+			
+			if (!StringUtils.isEmpty(metricsFile)) {
+				try {
+					metricsReporter = new MetricsReporter(metrics, metricsFile, metricsFormat, metricsInterval);
+				} catch (IllegalArgumentException e) {
+					throw new Neo4jException(e.getMessage());
+				}
+			}
+			
+			// shards are not compressed as a whole, the compression extension is added to documents in the shard
+			String exportPrefix = String.format("%tY%<tm%<td-%<tH%<tM%<tS", new Date());
+			String shardPrefix = "shards/" + exportPrefix;
+			String extension = Compressor.getExtension(compression);
+			String contentEncoding = Compressor.NONE.equals(compression) ? null : compression;
+			if (!StringUtils.isEmpty(outputFolder)) {
+				if (ndjson) {
+					addSink(ndjsonSink = new NdjsonSink(outputFolder, exportPrefix, ndjsonSize * 1024 * 1024), outputFormats);
+					if (resumed && null != checkpoint.getOutputFile())
+						resumeNdjson();
+				} else
+					addSink(createShardSink(new FileSink(outputFolder, isSharded() ? "" : extension, outputAtomic), 
+							shardPrefix, extension), outputFormats);
+			}
+			if (!StringUtils.isEmpty(s3Bucket) && !StringUtils.isEmpty(s3Key)) 
+				addSink(createShardSink(new S3Sink(s3client, s3Bucket, s3Key, publicReadRights, s3Threads, s3QueueSize, s3Retries, 
+						s3CheckETag, isSharded() ? null : contentEncoding, metrics), shardPrefix, extension), s3Formats);
+			
+			export(sources, resumed);
+		} finally {
+			closeSinks(false);
+			
+			if (null != metricsReporter)
+				metricsReporter.close();
+			
+			if (null != openedSource) {
+				openedSource.close();
+				graphSource = null;
+			}
+			
+			if (null != degreeIndex) {
+				degreeIndex.close();
+				degreeIndex = null;
+			}
+		}
+	}
+	
+	/**
+	 * Function to open Neo4j instance and the snapshot, if configured
+	 * @return GraphSource
+	 * @throws Neo4jException
+	 */
+	private GraphSource openGraphSource() throws Neo4jException {
+		GraphSource source = new Neo4jSource(getReadOnlyGraphDb(neo4jFolder));
 		
-		graphDb = getReadOnlyGraphDb(neo4jFolder);
+		if (!StringUtils.isEmpty(snapshotFolder)) {
+			Snapshot snapshot;
+			try {
+				snapshot = Snapshot.open(new File(snapshotFolder));
+			} catch (IOException e) {
+				source.close();
+				throw new Neo4jException("Unable to open graph snapshot: " + snapshotFolder + ". Error: " + e.getMessage());
+			}
+			
+			System.out.println(String.format("Snapshot of %d node ID's and %d node relationships, created %tF %<tT", 
+					snapshot.getNodes(), snapshot.getRelationships(), snapshot.getCreated()));
+			
+			source = new SnapshotSource(snapshot, source);
+		}
 		
+		return source;
+	}
+	
+	private void export(Map<Label, Configuration> sources, boolean resumed) throws Neo4jException {
 		if (0 != testNodeId) {
 			System.out.println("Test Node ID: " + testNodeId);
 		
-			try ( Transaction tx = graphDb.beginTx() ) {
+			try ( GraphSource.Session session = graphSource.begin() ) {
 				
-				Node node = graphDb.getNodeById(testNodeId);
-				if (null == node) {
+				if (!graphSource.hasNode(testNodeId)) {
 					System.err.println("Test Node does not exist");
 					System.exit(1);
 				} 
 				
-				if (!isValid(node, sources)) {
+				if (!isValid(testNodeId, sources)) {
 					System.err.println("Test Node is not valid for exporting");
 					System.exit(1);
 				} 
 				
 				System.out.println("Exporting test node");
 				
-				processNode(node, sources);
-				
-				System.exit(0);
+				progress = new Progress(1, 0, sinks);
+				Worker worker = new Worker(0, sources, new AtomicLong(), new long[0], 0);
+				try {
+					processNode(testNodeId, worker);
+				} finally {
+					worker.close();
+				}
 			}
+			
+			// wait until the document has been written, the same as the whole export
+			closeSinks(true);
+			return;
 		}
 		
 		
 //		System.out.println("Region: " + s3client.setE);
 //		System.out.println("Location: " + s3client.getBucketLocation(s3Bucket));
 		
-//		s3client.setRegion(Region.getRegion(Regions.US_WEST_2));
-		s3client.setEndpoint("s3-us-west-2.amazonaws.com");
-		
 		long beginTime = System.currentTimeMillis();
-							
-		try ( Transaction tx = graphDb.beginTx() ) {
-			graphDb
-				.getAllNodes()
-				.stream()
-				.filter(n -> isValid(n, sources))
-				.forEach(n -> processNode(n, sources));
+		
+		long[] candidates = findCandidates(sources.keySet());
+		
+		System.out.println(String.format("Found %d candidate nodes over %d ms", 
+				candidates.length, System.currentTimeMillis() - beginTime));
+		
+		int first = 0;
+		if (resumed) {
+			// all candidates before the checkpoint node have been exported
+			first = Arrays.binarySearch(candidates, checkpoint.getNodeId());
+			if (first < 0)
+				first = -first - 1;
+			
+			System.out.println(String.format("Resuming export from node %d. %d nodes have been exported before", 
+					checkpoint.getNodeId(), checkpoint.getExported()));
+		}
+		
+		if (null != checkpoint)
+			checkpoint.start(candidates, first, rangeSize);
+		
+		progress = new Progress(candidates.length - first, progressInterval, sinks);
+		progress.start();
+		
+		AtomicLong cursor = new AtomicLong();
+		
+		List<Worker> workers = new ArrayList<Worker>();
+		for (int i = 0; i < Math.max(1, threads); ++i)
+			workers.add(new Worker(i, sources, cursor, candidates, first));
+		
+		ExecutorService executor = Executors.newFixedThreadPool(workers.size());
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (Worker worker : workers)
+				futures.add(executor.submit(worker));
+			
+			for (Future<?> future : futures) 
+				future.get();
+		} catch (ExecutionException e) {
+			throw new Neo4jException("Export worker has failed. Error: " + e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new Neo4jException("Export has been interrupted");
+		} finally {
+			executor.shutdownNow();
+			progress.close();
+		}
+		
+		// wait until all documents have been written
+		closeSinks(true);
+		progress.report();
+		
+		if (null != cache)
+			cache.report();
+		if (null != fragmentCache)
+			fragmentCache.report();
+		
+		if (null != checkpoint) {
+			try {
+				checkpoint.delete();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
 		}
 		
 		long endTime = System.currentTimeMillis();
 		
+		long skipped = 0;
+		for (Worker worker : workers) {
+			System.out.println(String.format("Worker %d: scanned %d nodes, exported %d nodes (%d unchanged) over %d ms. Average %f nodes per second", 
+					worker.index, worker.scanned, worker.exported, worker.skipped, worker.time, 
+					worker.time > 0 ? (float) worker.exported * 1000f / (float) worker.time : 0f));
+			
+			skipped += worker.skipped;
+		}
+		
+		System.out.println(String.format("Transactions: %d, begin %.1f ms, close %.1f ms in total", 
+				transactionBeginTime.getCount(), transactionBeginTime.getSum() / 1e6, transactionCloseTime.getSum() / 1e6));
+		
+		long exported = nodeCounter.get();
 		System.out.println(String.format("Done. Exported %d nodes over %d ms. Average %f ms per node", 
-				nodeCounter, endTime - beginTime, (float)(endTime - beginTime) / (float) nodeCounter));
+				exported, endTime - beginTime, (float)(endTime - beginTime) / (float) exported));
+		System.out.println(String.format("Written %d nodes, skipped %d unchanged nodes", exported - skipped, skipped));
+	}
+	
+	private boolean isSharded() {
+		return shardSize > 0 || shardDocuments > 0;
+	}
+	
+	/**
+	 * Function to pack documents of the sink into shards, if sharding has been enabled
+	 * @param sink Sink to store shards
+	 * @param prefix Shard name prefix
+	 * @param extension Compression extension of documents
+	 * @return ShardSink or the sink itself
+	 */
+	private DocumentSink createShardSink(DocumentSink sink, String prefix, String extension) {
+		if (!isSharded())
+			return sink;
+		
+		return new ShardSink(sink, prefix, extension, shardSize > 0 ? shardSize * 1024 * 1024 : Long.MAX_VALUE, 
+				shardDocuments, metrics);
+	}
+	
+	/**
+	 * Function to close all sinks and the manifest. The function will wait until all documents have been written
+	 * @param completed true if the export has been completed and the manifest can replace the previous one
+	 */
+	private void closeSinks(boolean completed) {
+		for (DocumentSink sink : sinks) {
+			try {
+				sink.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		
+		sinks.clear();
+		formatSinks.clear();
+		ndjsonSink = null;
+		
+		if (null != manifest) {
+			try {
+				if (completed)
+					manifest.commit();
+				else
+					manifest.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			
+			manifest = null;
+		}
+	}
+	
+	/**
+	 * Function to continue the NDJSON file of the interrupted export from the checkpoint
+	 * @throws Neo4jException
+	 */
+	private void resumeNdjson() throws Neo4jException {
+		try {
+			ndjsonSink.resume(checkpoint.getOutputFile(), checkpoint.getOutputSize());
+		} catch (IOException e) {
+			throw new Neo4jException("Unable to resume NDJSON file: " + checkpoint.getOutputFile() + ". Error: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Function to store the checkpoint, if the checkpoint interval has passed.
+	 * All sinks and the manifest will be flushed first, so every document 
+	 * before the checkpoint is stored.
+	 */
+	private synchronized void saveCheckpoint() {
+		if (!checkpoint.isSaveDue(checkpointInterval * 1000L))
+			return;
+		
+		try {
+			Properties state = checkpoint.getState();
+			
+			for (DocumentSink sink : sinks)
+				sink.flush();
+			if (null != manifest)
+				manifest.flush();
+			if (null != ndjsonSink)
+				checkpoint.setOutput(state, ndjsonSink.getFlushedFile(), ndjsonSink.getFlushedSize());
+			
+			checkpoint.save(state);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Function to find all nodes, which can be exported. 
+	 * 
+	 * Only nodes having at least one of the source labels can be valid, so the nodes 
+	 * are taken from the label index instead of scanning the whole graph.
+	 * @param labels Collection of source labels
+	 * @return sorted array of unique node ID's
+	 */
+	private long[] findCandidates(Collection<Label> labels) {
+		long[] ids = new long[1024];
+		int size = 0;
+		
+		try ( GraphSource.Session session = graphSource.begin() ) {
+			for (Label label : labels) {
+				long[] nodes = graphSource.findNodes(label.name());
+				if (size + nodes.length > ids.length)
+					ids = Arrays.copyOf(ids, Math.max(size + nodes.length, size * 2));
+				
+				System.arraycopy(nodes, 0, ids, size, nodes.length);
+				size += nodes.length;
+			}
+		}
+		
+		// the node can have more than one source label, remove duplicates
+		Arrays.sort(ids, 0, size);
+		int unique = 0;
+		for (int i = 0; i < size; ++i) 
+			if (unique == 0 || ids[unique - 1] != ids[i])
+				ids[unique++] = ids[i];
+		
+		return Arrays.copyOf(ids, unique);
+	}
+	
+	/**
+	 * Export worker. 
+	 * 
+	 * Will take next range of {@link Exporter#rangeSize} candidate nodes from the shared cursor 
+	 * and export all valid nodes from it, until all candidates have been processed.
+	 * Completed ranges are reported to the checkpoint.
+	 * Each worker uses it's own read transaction, which is replaced after every
+	 * {@link Exporter#transactionSize} scanned nodes, so a long export does not hold 
+	 * one transaction and it's state for hours.
+	 */
+	private class Worker implements Runnable {
+		private final int index;
+		private final Map<Label, Configuration> sources;
+		private final AtomicLong cursor;
+		private final long[] candidates;
+		private final int first;
+		private final Neighbourhood neighbourhood = new Neighbourhood();
+		private final GraphFormat[] formats;
+		private final JsonGraphWriter[] writers;
+		private final MessageDigest digest = createDigest();
+		private final Compressor compressor = Compressor.create(compression, compressionLevel);
+		
+		private long scanned;
+		private long exported;
+		private long skipped;
+		private long time;
+		
+		public Worker(int index, Map<Label, Configuration> sources, AtomicLong cursor, long[] candidates, int first) {
+			this.index = index;
+			this.sources = sources;
+			this.cursor = cursor;
+			this.candidates = candidates;
+			this.first = first;
+			
+			// every format is written once and passed to all sinks of the format
+			formats = formatSinks.isEmpty() 
+					? new GraphFormat[] { GraphFormat.get(GraphFormat.JSON) }
+					: formatSinks.keySet().toArray(new GraphFormat[formatSinks.size()]);
+			writers = new JsonGraphWriter[formats.length];
+			for (int i = 0; i < formats.length; ++i)
+				writers[i] = formats[i].createWriter();
+		}
+		
+		@Override
+		public void run() {
+			long beginTime = System.currentTimeMillis();
+			
+			GraphSource.Session session = beginTransaction();
+			try {
+				int window = 0;
+				long range, from;
+				while ((from = first + (range = cursor.getAndIncrement()) * rangeSize) < candidates.length) {
+					int to = (int) Math.min(from + rangeSize, candidates.length);
+					long rangeExported = exported;
+					long rangeSkipped = skipped;
+					
+					for (int i = (int) from; i < to; ++i) {
+						long node = candidates[i];
+						if (!graphSource.hasNode(node)) {
+							// the node has been deleted
+							continue;
+						}
+						
+						++scanned;
+						progress.scanned();
+						scannedCounter.increment();
+						
+						long validateStart = System.nanoTime();
+						boolean valid = isValid(node, sources);
+						validateTime.recordSince(validateStart);
+						
+						if (valid)
+							exported += processNode(node, this);
+						
+						// the next window of nodes is scanned in a new transaction
+						if (transactionSize > 0 && ++window >= transactionSize) {
+							closeTransaction(session);
+							session = beginTransaction();
+							window = 0;
+						}
+					}
+					
+					if (null != checkpoint) {
+						checkpoint.complete((int) range, exported - rangeExported, skipped - rangeSkipped);
+						saveCheckpoint();
+					}
+				}
+			} finally {
+				if (null != session)
+					closeTransaction(session);
+				close();
+			}
+			
+			time = System.currentTimeMillis() - beginTime;
+		}
+		
+		/**
+		 * Function to release native resources of the worker
+		 */
+		private void close() {
+			if (null != compressor)
+				compressor.close();
+		}
+		
+		private GraphSource.Session beginTransaction() {
+			long start = System.nanoTime();
+			GraphSource.Session session = graphSource.begin();
+			transactionBeginTime.recordSince(start);
+			
+			return session;
+		}
+		
+		private void closeTransaction(GraphSource.Session session) {
+			long start = System.nanoTime();
+			session.close();
+			transactionCloseTime.recordSince(start);
+		}
 	}
 	
-	private boolean hasType(Node node, final Label[] types) {
+	private boolean hasType(long node, final Label[] types) {
 		// if array is empty, there is no restrictions
 		if (null == types || types.length == 0) {
 			return true;
 		}
 
 		for (Label label : types) {
-			if (node.hasLabel(label)) {
+			if (graphSource.hasLabel(node, label.name())) {
 				return true;
 			}
 		}
@@ -332,17 +1229,17 @@ public class Exporter {
 	}
 	
 
-	private boolean hasConnection(Node node, final Label[] sources) {
+	private boolean hasConnection(long node, final Label[] sources) {
 		// if array is empty, there is no restrictions
 		if (null == sources || sources.length == 0) {
 			return true;
 		}
 		
-		Iterable<Relationship> relationships = node.getRelationships();
-		for (Relationship relationship : relationships) {
-			Node other = relationship.getOtherNode(node);
+		Iterable<Edge> relationships = graphSource.getEdges(node);
+		for (Edge relationship : relationships) {
+			long other = relationship.getOther(node);
 			for (Label label : sources) {
-				if (other.hasLabel(label)) {
+				if (graphSource.hasLabel(other, label.name())) {
 					return true;
 				}
 			}
@@ -351,10 +1248,10 @@ public class Exporter {
 		return false;
 	}
 	
-	private boolean isValid(Node node,  Map<Label, Configuration> sources) {
+	private boolean isValid(long node,  Map<Label, Configuration> sources) {
 		for (Map.Entry<Label, Configuration> entry : sources.entrySet()) {
-			if (node.hasLabel(entry.getKey()) 
-					&& node.hasProperty(entry.getValue().getKey())
+			if (graphSource.hasLabel(node, entry.getKey().name()) 
+					&& null != graphSource.getProperty(node, entry.getValue().getKey())
 					&& hasType(node, entry.getValue().getType())
 					&& hasConnection(node, entry.getValue().getLinkedSource())) {
 				return true;
@@ -380,131 +1277,396 @@ public class Exporter {
 	
 	/**
 	 * Function to process a single node
-	 * @param node Node to export
+	 * @param nodeId Node to export
+	 * @param worker Export worker, holding reusable traversal and serialization state
+	 * @return number of exported files
 	 */
-	private void processNode(Node node, Map<Label, Configuration> sources) {
+	private int processNode(long nodeId, Worker worker) {
+		Map<Label, Configuration> sources = worker.sources;
+		Neighbourhood neighbourhood = worker.neighbourhood;
+		
+		int exported = 0;
 		try {
-			Set<String> jsonNames = generateNames(node, sources);
+			long namesStart = System.nanoTime();
+			Set<String> jsonNames = generateNames(nodeId, sources);
+			namesTime.recordSince(namesStart);
 			if (jsonNames.isEmpty()) {
-				System.out.println("Unable to generate json name for node: " + node.getId());
-				return;
+				if (logger.isLoggable(Level.FINE))
+					logger.fine("Unable to generate json name for node: " + nodeId);
+				return exported;
+			}
+			
+			if (null == getNodeType(nodeId)) {
+				if (logger.isLoggable(Level.FINE))
+					logger.fine("Unable to export node without type: " + nodeId);
+				return exported;
 			}
 		
-			long rootId = node.getId();
-			Map<Long, Node> graphNodes = new HashMap<Long, Node>();
-				
-			graphNodes.put(node.getId(), node);
-//			String type = getNodeType(node);
-//			if (!StringUtils.isEmpty(type) && isDatasetType(type)) { //  && !isInstitutionType(type)
-				List<Node> root = new ArrayList<Node>();
-				root.add(node);
+			RootSpan span = RootSpans.begin();
+			try {
+				long traverseStart = System.nanoTime();
+				extractNeighbourhood(nodeId, neighbourhood);
+				long traverseNanos = System.nanoTime() - traverseStart;
+				traverseTime.record(traverseNanos);
+				neighbourhoodSize.record(neighbourhood.size());
+						
+				if (logger.isLoggable(Level.FINE))
+					logger.fine("Done! Found " + neighbourhood.size() + " unique nodes.");
 						
-				exctractNodes(graphNodes, root, maxLevel);
-//			}
+				if (neighbourhood.size() > 1) {
+					long serializeStart = System.nanoTime();
+					writeGraph(nodeId, neighbourhood, worker.writers);
+					long serializeNanos = System.nanoTime() - serializeStart;
+					serializeTime.record(serializeNanos);
 					
-			System.out.println("Done! Found " + graphNodes.size() + " unique nodes.");
+					// the document will be stored once under the first name, 
+					// all other names will be created as aliases
+					List<String> names = new ArrayList<String>(jsonNames);
 					
-			JsonGraph jsonGraph = new JsonGraph();
-			for (Node graphNode : graphNodes.values()) {
-				JsonNode jsonNode = extractNode(graphNode);
-				if (graphNode.getId() == rootId)
-					jsonNode.addExtra(JsonNode.EXTRA_ROOT);
+					// exported and skipped names are counted in the first format only
+					long writeNanos = 0;
+					for (int i = 0; i < worker.formats.length; ++i)
+						writeNanos += writeDocument(worker.formats[i], worker.writers[i], worker, names, i == 0);
+					
+					if (span.isEnabled()) {
+						span.setGraph(nodeId, neighbourhood.size(), neighbourhood.getRelationships().size());
+						span.setTimes(traverseNanos, serializeNanos, writeNanos);
+						span.setBytes(worker.writers[0].getSize());
+					}
 				
-				jsonGraph.addNode(jsonNode);
-	
-			//	type = getNodeType(graphNode);
-			//	boolean isDoP = isDatasetType(type) || isPublicationType(type);
-			//	boolean isI = isInstitutionType(type);
+					if (logger.isLoggable(Level.FINE))
+						for (String jsonName : names) 
+							logger.fine("Put Object: " + jsonName);
 				
-				Iterable<Relationship> relationships = graphNode.getRelationships();
-				if (null != relationships) 
-					for (Relationship relationship : relationships) {
-						if (relationship.getStartNode().getId() == graphNode.getId()) {
-							// Only outgoing relationships need to be exported, because 
-							// we will process all nodes and each relationship will be output twice.
-							// If both relationship nodes wasn't selected, the relationship will be 
-							// ignored and node will have 'incomplete' flag attached.
-							
-							// first check if node exists in the map
-							Node otherNode = graphNodes.get(relationship.getEndNode().getId());
-							if (null == otherNode) 
-								jsonNode.addExtra(JsonNode.EXTRA_INCOMPLETE);
-							else
-								jsonGraph.addRelationship(extractRelationship(relationship));
-								
-							
-						/*	
-							
-								jsonNode.addExtra(JsonNode.EXTRA_INCOMPLETE);
-							else if (isDoP) { // if parent was Dataset or Publication, do not export relationship to institution
-								type = getNodeType(otherNode);
-								if (isInstitutionType(type))
-									jsonNode.addExtra(JsonNode.EXTRA_INCOMPLETE);
-								else
-									jsonGraph.addRelationship(extractRelationship(relationship));
-							} else if (isI) { // if parent was Institution, do not export relationship to Dataset or Publication
-								type = getNodeType(otherNode);
-								if (isDatasetType(type) || isPublicationType(type))
-									jsonNode.addExtra(JsonNode.EXTRA_INCOMPLETE);
-								else
-									jsonGraph.addRelationship(extractRelationship(relationship));
-							} else // export all other existing relationships
-								jsonGraph.addRelationship(extractRelationship(relationship));*/
-						} else if (!graphNodes.containsKey(relationship.getStartNode().getId()))
-							jsonNode.addExtra(JsonNode.EXTRA_INCOMPLETE);
-					}
+					exported += names.size();
+					documentCounter.add(names.size());
+				} else if (span.isEnabled()) {
+					span.setGraph(nodeId, neighbourhood.size(), 0);
+					span.setTimes(traverseNanos, 0, 0);
+				}
+			} finally {
+				span.commit();
 			}
+		} catch (Exception e) {
+			errorCounter.increment();
+			e.printStackTrace();
+		}
+		
+		nodeCounter.addAndGet(exported);
+		return exported;
+	}
+	
+	/**
+	 * Function to pass the written document to all sinks of it's format. 
+	 * The document will not be written, if the manifest has the same digest for all it's names
+	 * @param format Document format
+	 * @param writer Writer of the format, containing the document
+	 * @param worker Export worker, holding reusable digest and compressor
+	 * @param jsonNames Document names, the first name is canonical
+	 * @param primary true if exported and skipped names should be counted
+	 * @return time to write the document into sinks in nanoseconds
+	 * @throws IOException
+	 */
+	private long writeDocument(GraphFormat format, JsonGraphWriter writer, Worker worker, 
+			List<String> jsonNames, boolean primary) throws IOException {
+		byte[] bytes = writer.getBuffer();
+		int length = writer.getSize();
+		if (primary)
+			documentSize.record(length);
+		
+		List<String> names = format.getNames(jsonNames);
+		
+		String digest = null;
+		if (null != manifest) {
+			long digestStart = System.nanoTime();
+			digest = getDigest(worker.digest, bytes, length);
+			digestTime.recordSince(digestStart);
 			
-			if (jsonGraph.getNodes() != null && jsonGraph.getNodes().size() > 1) {
-				String jsonString = mapper.writeValueAsString(jsonGraph);
+			// the same document, compressed differently, has to be written again,
+			// the default level is not recorded, so it matches the earlier manifests
+			if (null != worker.compressor)
+				digest += ":" + compression + (compressionLevel > 0 ? ":" + compressionLevel : "");
+		}
+		
+		long writeNanos = 0;
+		if (null != digest && skipUnchanged && manifest.isUnchanged(names, digest)) {
+			if (primary) {
+				worker.skipped += names.size();
+				progress.skipped(names.size());
+				skippedCounter.add(names.size());
+			}
+		} else {
+			byte[] data = bytes;
+			int dataLength = length;
+			if (null != worker.compressor) {
+				long compressStart = System.nanoTime();
+				worker.compressor.compress(bytes, 0, length);
+				compressTime.recordSince(compressStart);
 				
-				for (String jsonName : jsonNames) {
-					System.out.println("Put Object: " + jsonName);
-
-					if (!StringUtils.isEmpty(outputFolder)) {
-						FileUtils.writeStringToFile(new File(outputFolder, jsonName), jsonString);
-					}
+				data = worker.compressor.getBuffer();
+				dataLength = worker.compressor.getSize();
+				compressedSize.record(dataLength);
+			}
 			
-					if (!StringUtils.isEmpty(s3Bucket) && !StringUtils.isEmpty(s3Key)) {
-						
-						byte[] bytes = jsonString.getBytes(charset);
-						
-						ObjectMetadata metadata = new ObjectMetadata();
-						metadata.setContentEncoding(CONTENT_ENCODING);
-						metadata.setContentType(CONTENT_TYPE);
-						metadata.setContentLength(bytes.length);
-						
-						InputStream inputStream = new ByteArrayInputStream(bytes);
-						
-						PutObjectRequest request = new PutObjectRequest(s3Bucket, s3Key + jsonName, inputStream, metadata);
-						if (publicReadRights)
-							request.setCannedAcl(CannedAccessControlList.PublicRead);
-						
-						s3client.putObject(request);
+			long writeStart = System.nanoTime();
+			List<DocumentSink> targets = formatSinks.get(format);
+			if (null != targets)
+				for (DocumentSink sink : targets)
+					sink.write(names, data, 0, dataLength);
+			writeNanos = System.nanoTime() - writeStart;
+			writeTime.record(writeNanos);
+			progress.exported(primary ? names.size() : 0, dataLength);
+		}
+		
+		if (null != manifest)
+			manifest.add(names, digest);
+		
+		return writeNanos;
+	}
+	
+	/**
+	 * Function to extract all nodes around the root node
+	 * @param nodeId Root node ID
+	 * @param neighbourhood Reusable traversal state, will contain extracted nodes
+	 */
+	void extractNeighbourhood(long nodeId, Neighbourhood neighbourhood) {
+		neighbourhood.clear();
+		neighbourhood.add(nodeId);
+		
+//		String type = getNodeType(node);
+//		if (!StringUtils.isEmpty(type) && isDatasetType(type)) { //  && !isInstitutionType(type)
+			LongList root = neighbourhood.getLevel(maxLevel);
+			root.add(nodeId);
+					
+			exctractNodes(neighbourhood, root, maxLevel);
+//		}
+	}
+	
+	/**
+	 * Function to write extracted nodes and relationships between them as a document
+	 * @param rootId Root node ID
+	 * @param neighbourhood Extracted nodes
+	 * @param writers Reusable writers, will contain the document in their formats
+	 * @throws IOException
+	 */
+	void writeGraph(long rootId, Neighbourhood neighbourhood, JsonGraphWriter... writers) throws IOException {
+		List<Edge> graphRelationships = neighbourhood.getRelationships();
+		
+		// nodes and relationships are written in ID order, so unchanged graph 
+		// will always produce the same document
+		neighbourhood.sortNodes();
+		
+		LongList graphNodes = neighbourhood.getNodes();
+		BitSet incomplete = neighbourhood.getIncomplete();
+		RelationshipBuffer buffer = neighbourhood.getRelationshipBuffer();
+		
+		// relationships of the supernode are not read, every relationship between the supernode 
+		// and the other document nodes is found from the other side
+		long supernode = findSupernode(graphNodes, buffer);
+		int supernodeIndex = -1;
+		int supernodeRelationships = 0;
+		
+		for (int i = 0; i < graphNodes.size(); ++i) {
+			long graphNode = graphNodes.get(i);
+			if (graphNode == supernode) {
+				supernodeIndex = i;
+				continue;
+			}
+		
+		//	type = getNodeType(graphNode);
+		//	boolean isDoP = isDatasetType(type) || isPublicationType(type);
+		//	boolean isI = isInstitutionType(type);
+			
+			// relationships of expanded nodes have been read by the traversal already
+			long range = buffer.getRange(graphNode);
+			if (range >= 0) {
+				for (int j = (int) (range >>> 32); j < (int) range; ++j) {
+					long start = buffer.getStart(j);
+					long end = buffer.getEnd(j);
+					switch (testRelationship(neighbourhood, graphNode, start, end, supernode)) {
+					case RELATIONSHIP_EXTERNAL:
+						incomplete.set(i);
+						break;
+					case RELATIONSHIP_EXPORTED:
+						graphRelationships.add(buffer.getEdge(j));
+						if (start == supernode || end == supernode)
+							++supernodeRelationships;
+						break;
 					}
-											
-					++nodeCounter;
 				}
+			} else {
+				Iterable<Edge> relationships = getEdges(graphNode);
+				if (null != relationships) 
+					for (Edge relationship : relationships) {
+						long start = relationship.getStart();
+						long end = relationship.getEnd();
+						switch (testRelationship(neighbourhood, graphNode, start, end, supernode)) {
+						case RELATIONSHIP_EXTERNAL:
+							incomplete.set(i);
+							break;
+						case RELATIONSHIP_EXPORTED:
+							graphRelationships.add(relationship);
+							if (start == supernode || end == supernode)
+								++supernodeRelationships;
+							break;
+						}
+					}
 			}
-		} catch (Exception e) {
-			e.printStackTrace();
+		}
+		
+		// the supernode has relationships to nodes outside of the document, if it has more 
+		// relationships than have been found
+		if (supernodeIndex >= 0) {
+			supernodeCounter.increment();
+			if (getDegree(supernode) > supernodeRelationships)
+				incomplete.set(supernodeIndex);
+		}
+		
+		// nodes must be written before relationships, so relationships are collected first.
+		// All formats are written together, so node properties are read only once
+		for (JsonGraphWriter writer : writers)
+			writer.writeStartGraph();
+		for (int i = 0; i < graphNodes.size(); ++i) {
+			long graphNode = graphNodes.get(i);
+			Map<String, Object> properties = null;
+			for (JsonGraphWriter writer : writers) {
+				if (null != fragmentCache && writer.isJson()) 
+					writer.writeNode(getFragment(graphNode, writer), graphNode == rootId, incomplete.get(i));
+				else {
+					if (null == properties)
+						properties = getProperties(graphNode);
+					writer.writeNode(graphNode, (String) properties.get(PROPERTY_TYPE), graphNode == rootId, 
+							incomplete.get(i), properties);
+				}
+			}
+		}
+		
+		neighbourhood.sortRelationships();
+		for (Edge relationship : graphRelationships) 
+			for (JsonGraphWriter writer : writers)
+				writer.writeRelationship(relationship.getId(), relationship.getStart(), 
+						relationship.getEnd(), relationship.getType());
+		for (JsonGraphWriter writer : writers)
+			writer.writeEndGraph();
+	}
+	
+	/**
+	 * Function to test relationship of the document node. 
+	 * 
+	 * Only outgoing relationships need to be exported, because we will process all nodes
+	 * and each relationship will be output twice. If both relationship nodes wasn't selected,
+	 * the relationship will be ignored and node will have 'incomplete' flag attached.
+	 * Outgoing relationships of the supernode are exported by the other node.
+	 * 
+	 * @param neighbourhood Document nodes
+	 * @param node Document node ID
+	 * @param start Relationship start node ID
+	 * @param end Relationship end node ID
+	 * @param supernode Supernode ID, which relationships are not read, or -1
+	 * @return RELATIONSHIP_EXPORTED, RELATIONSHIP_EXTERNAL or RELATIONSHIP_INTERNAL
+	 */
+	private static int testRelationship(Neighbourhood neighbourhood, long node, long start, long end, long supernode) {
+		if (start == node) 
+			return neighbourhood.contains(end) ? RELATIONSHIP_EXPORTED : RELATIONSHIP_EXTERNAL;
+		if (!neighbourhood.contains(start))
+			return RELATIONSHIP_EXTERNAL;
+		
+		return start == supernode ? RELATIONSHIP_EXPORTED : RELATIONSHIP_INTERNAL;
+	}
+	
+	/**
+	 * Function to find the node with the most relationships, if it is a supernode.
+	 * Nodes, which relationships have been read by the traversal, are never supernodes.
+	 * Neo4j counts relationships of small nodes by reading them, so the search is done 
+	 * only if node degrees are read from the degree index or from memory
+	 * @param nodes Document nodes
+	 * @param buffer Relationships, read by the traversal
+	 * @return Supernode ID, -1 if supernodes are disabled or the document has no supernode
+	 */
+	private long findSupernode(LongList nodes, RelationshipBuffer buffer) {
+		if (!hasSupernodes())
+			return -1;
+		
+		long supernode = -1;
+		int maxDegree = supernodeDegree;
+		for (int i = 0; i < nodes.size(); ++i) {
+			long node = nodes.get(i);
+			if (buffer.getRange(node) >= 0)
+				continue;
+			
+			int degree = getDegree(node);
+			if (degree > maxDegree) {
+				supernode = node;
+				maxDegree = degree;
+			}
+		}
+		
+		return supernode;
+	}
+	
+	/**
+	 * Function to return serialized node from the fragment cache, the node will be serialized if it is not cached
+	 * @param nodeId Node ID
+	 * @param writer JSON writer, used to serialize the node
+	 * @return NodeFragment
+	 * @throws IOException
+	 */
+	private NodeFragment getFragment(long nodeId, JsonGraphWriter writer) throws IOException {
+		try {
+			return fragmentCache.get(nodeId, id -> {
+				try {
+					Map<String, Object> properties = getProperties(id);
+					return writer.createFragment(id, (String) properties.get(PROPERTY_TYPE), properties);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+	
+	/**
+	 * Function to create digest, used to detect changed documents. 
+	 * MD5 is used, because it is the same as S3 ETag of an uploaded object
+	 * @return MessageDigest
+	 */
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance(DIGEST_ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("Unable to create " + DIGEST_ALGORITHM + " digest", e);
 		}
 	}
 	
+	/**
+	 * Function to return document digest as hex string
+	 * @param digest Reusable MessageDigest
+	 * @param bytes Document data
+	 * @param length Document length
+	 * @return String
+	 */
+	private static String getDigest(MessageDigest digest, byte[] bytes, int length) {
+		digest.reset();
+		digest.update(bytes, 0, length);
+		
+		return Hex.encodeHexString(digest.digest());
+	}
+	
 	/**
 	 * Function to return the name of exporting Java file (without leading .json). 
 	 * Must be implemented in the final exporter class.
-	 * @param node Node The node to export
-	 * @return json - JSON file name
+	 * @param nodeId The node to export
+	 * @return json - JSON file names in sorted order
 	 */
-	public Set<String> generateNames(Node node, Map<Label, Configuration> sources) {
-		Set<String> names = new HashSet<String>();
+	public Set<String> generateNames(long nodeId, Map<Label, Configuration> sources) {
+		Set<String> names = new TreeSet<String>();
 		
 		for (Map.Entry<Label, Configuration> entry : sources.entrySet()) {
 			Label label = entry.getKey();
 			String property = entry.getValue().getKey();
-			if (node.hasLabel(label) && node.hasProperty(property)) {
-				Object originalKeys = node.getProperty(property);
+			if (graphSource.hasLabel(nodeId, label.name())) {
+				Object originalKeys = graphSource.getProperty(nodeId, property);
 				if (originalKeys instanceof String) {
 					generateName(names, label.name(), (String) originalKeys);
 				} else if (originalKeys instanceof String[]) {
@@ -530,12 +1692,16 @@ public class Exporter {
 	 * @param nodes
 	 * @param level
 	 */
-	private void exctractNodes(Map<Long, Node> graph, List<Node> nodes, int level) {
-		// create empty array for siblings
-		List<Node> siblings = level > 0 ? new ArrayList<Node>() : null; 
+	private void exctractNodes(Neighbourhood graph, LongList nodes, int level) {
+		// take reusable array for siblings
+		LongList siblings = level > 0 ? graph.getLevel(level - 1) : null; 
+		
+		// relationships are kept for writing the document
+		RelationshipBuffer buffer = graph.getRelationshipBuffer();
 		
 		// process all nodes
-		for (Node node : nodes) {
+		for (int i = 0; i < nodes.size(); ++i) {
+			long node = nodes.get(i);
 			
 			// extract node type
 			String type = getNodeType(node);
@@ -547,7 +1713,7 @@ public class Exporter {
 			//	boolean isDoP = isDatasetType(type) || isPublicationType(type);
 			
 				// extract all node relationships
-				Iterable<Relationship> relationships = node.getRelationships();
+				Iterable<Edge> relationships = getEdges(node);
 				
 				// check if relatioonships exists
 				if (null != relationships) {
@@ -555,14 +1721,36 @@ public class Exporter {
 					// new siblings counter
 					int nSiblings = 0;
 					
+					// number of relationships to read, only supernodes are limited
+					int limit = hasSupernodes() && supernodeRelationships > 0 
+							&& getDegree(node) > supernodeDegree ? supernodeRelationships : -1;
+					
+					// record the node relationships
+					buffer.begin();
+					boolean complete = true;
+					boolean capped = false;
+					
 					// process all relationships
-					for (Relationship relationship : relationships) {
+					for (Edge relationship : relationships) {
+						
+						// stop reading relationships of the supernode
+						if (limit >= 0 && limit-- == 0) {
+							truncatedCounter.increment();
+							complete = false;
+							break;
+						}
+						
+						buffer.add(relationship);
+						
+						// once nodes cap has been reached, relationships are only recorded
+						if (capped)
+							continue;
 						
 						// extract other node
-						Node other = relationship.getOtherNode(node);
+						long other = relationship.getOther(node);
 						
 						// save node only if it has not been saved before 
-						if (!graph.containsKey(other.getId())) {
+						if (!graph.contains(other)) {
 							
 							// extract other node type
 							type = getNodeType(other);
@@ -580,11 +1768,17 @@ public class Exporter {
 								if (!isInstitutionType(type)) {
 
 									// extract node once
-									graph.put(other.getId(), other);
+									graph.add(other);
 	
-									// abort the search if nodes cap has been reached
-									if (maxNodes > 0 && graph.size() >= maxNodes) 
-										return;
+									// abort the search if nodes cap has been reached. The rest of 
+									// relationships is still recorded, if writing the document would read them
+									if (maxNodes > 0 && graph.size() >= maxNodes) {
+										if (limit >= 0 || hasSupernodes() && getDegree(node) > supernodeDegree)
+											return;
+										
+										capped = true;
+										continue;
+									}
 							
 									// add node to the syblings array, if need to check it's siblings as well
 									//if (level > 0 && (maxSiblings <= 0 || nSiblings < maxSiblings) && !isI) {
@@ -596,6 +1790,11 @@ public class Exporter {
 							}
 						}
 					}
+					
+					if (complete)
+						buffer.commit(node);
+					if (capped)
+						return;
 				}
 			}
 		}
@@ -608,11 +1807,47 @@ public class Exporter {
 	
 	/**
 	 * Function to return node type
-	 * @param node
+	 * @param nodeId
+	 * @return
+	 */
+	private String getNodeType(long nodeId) {
+		return graphSource.getNodeType(nodeId);
+	}
+	
+	/**
+	 * Function to return node properties
+	 * @param nodeId
+	 * @return
+	 */
+	private Map<String, Object> getProperties(long nodeId) {
+		return graphSource.getProperties(nodeId);
+	}
+	
+	/**
+	 * Function to return node relationships
+	 * @param nodeId
+	 * @return
+	 */
+	private Iterable<Edge> getEdges(long nodeId) {
+		return graphSource.getEdges(nodeId);
+	}
+	
+	/**
+	 * Function to test if supernodes are enabled and node degrees are cheap to read
+	 * @return boolean
+	 */
+	private boolean hasSupernodes() {
+		return supernodeDegree > 0 && (null != degreeIndex || graphSource.isStructureInMemory());
+	}
+	
+	/**
+	 * Function to return number of node relationships, from the degree index if it has the node
+	 * @param nodeId
 	 * @return
 	 */
-	private String getNodeType(Node node) {
-		return ((String) node.getProperty(PROPERTY_TYPE, null));
+	private int getDegree(long nodeId) {
+		int degree = null != degreeIndex ? degreeIndex.getDegree(nodeId) : -1;
+		return degree >= 0 ? degree : graphSource.getDegree(nodeId);
 	}
 	
 	/*private boolean isValidType(Node node) {
@@ -646,41 +1881,4 @@ public class Exporter {
 	/*private boolean isPublicationType(String type) {
 		return type.equals(GraphUtils.TYPE_PUBLICATION);
 	}*/
-
-	/**
-	 * Function to extract Node data
-	 * @param node
-	 * @return
-	 */
-	private JsonNode extractNode(Node node) {
-		String type = getNodeType(node);
-		if (null == type)
-			return null;
-		
-		JsonNode jsonNode = new JsonNode();
-		jsonNode.setId(node.getId());
-		jsonNode.setType(type);
-				
-		Iterable<String> keys = node.getPropertyKeys();
-		for (String key : keys) 
-			jsonNode.addProperty(key, node.getProperty(key));
-		
-		return jsonNode;
-	}
-	
-	/**
-	 * Function to extract relationship data
-	 * @param relationship
-	 * @return
-	 */
-	private JsonRelationship extractRelationship(Relationship relationship) {
-		JsonRelationship jsonRelationship = new JsonRelationship();
-		
-		jsonRelationship.setId(relationship.getId());
-		jsonRelationship.setFrom(relationship.getStartNode().getId());
-		jsonRelationship.setTo(relationship.getEndNode().getId());
-		jsonRelationship.setType(relationship.getType().name());
-		
-		return jsonRelationship;
-	}
 }
@@ -0,0 +1,50 @@
+package org.rdswitchboard.exporters.graph;
+
+import java.util.function.LongFunction;
+
+import org.rdswitchboard.exporters.graph.collections.LruCache;
+import org.rdswitchboard.exporters.graph.metrics.Metrics;
+import org.researchgraph.exporters.graph.json.NodeFragment;
+
+/**
+ * Cache of serialized nodes, shared by all export workers
+ * 
+ * Hub nodes are written into thousands of documents. The cache keeps every node serialized
+ * as UTF-8 JSON, so writing a cached node into the document is a copy of the ready bytes.
+ * Root and incomplete flags are added when the node is written. Least recently used 
+ * fragments are evicted, when the total size of fragments exceeds the cache size. 
+ * 
+ * @version 1.0.0
+ */
+
+class FragmentCache {
+	private final LruCache<NodeFragment> fragments;
+	private final CacheStats stats;
+	
+	/**
+	 * Create new cache
+	 * @param capacity Total cache size in bytes
+	 * @param metrics Export metrics, which will receive cache statistics
+	 */
+	FragmentCache(long capacity, Metrics metrics) {
+		this.fragments = new LruCache<NodeFragment>(capacity, NodeFragment::getSize);
+		this.stats = new CacheStats(metrics, "fragments", "Serialized nodes");
+	}
+	
+	/**
+	 * Function to return serialized node
+	 * @param nodeId Node ID
+	 * @param loader Function to serialize the node, if it is not cached
+	 * @return NodeFragment
+	 */
+	NodeFragment get(long nodeId, LongFunction<NodeFragment> loader) {
+		return fragments.get(nodeId, loader, stats);
+	}
+	
+	/**
+	 * Function to print cache statistics
+	 */
+	public void report() {
+		System.out.println(String.format("Fragment cache: %s, size %.1f MB", stats, fragments.size() / (1024.0 * 1024.0)));
+	}
+}
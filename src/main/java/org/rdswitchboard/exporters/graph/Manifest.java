@@ -0,0 +1,186 @@
+package org.rdswitchboard.exporters.graph;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Manifest of exported documents
+ *
+ * Every document can be exported under several names, but will be stored only once
+ * under it's canonical name. The manifest is a text file, mapping every exported name
+ * to the canonical name and the content digest of the document, one name per line:
+ *
+ *   name &lt;TAB&gt; canonical name &lt;TAB&gt; digest
+ *
+ * The canonical name is mapped to itself. Lines are written as documents are exported,
+ * so the order of lines is not defined.
+ *
+ * The new manifest is written into a temporary file, which replaces the manifest
+ * file when the manifest is committed. Until then the manifest of the previous export
+ * can be loaded to detect unchanged documents. The temporary file of an interrupted 
+ * export is kept, so the resumed export can continue it, after removing the partially 
+ * written last line. Names exported after the last checkpoint will be exported again and 
+ * can appear twice, with the later line taking effect.
+ *
+ * @version 1.2.1
+ */
+
+public class Manifest implements Closeable {
+	private static final char SEPARATOR = '\t';
+	private static final String TEMP_EXTENSION = ".tmp";
+	private static final int BUFFER_SIZE = 8 * 1024;
+
+	private final File file;
+	private final File tempFile;
+	private final BufferedWriter writer;
+	private final Map<String, String> previous;
+
+	/**
+	 * Create new manifest
+	 * @param file Manifest file name
+	 * @param loadPrevious true to load the manifest of the previous export, if it exists
+	 * @param resume true to continue the manifest of interrupted export
+	 * @throws IOException
+	 */
+	public Manifest(String file, boolean loadPrevious, boolean resume) throws IOException {
+		this.file = new File(file);
+		this.tempFile = new File(file + TEMP_EXTENSION);
+		this.previous = loadPrevious ? load(this.file) : null;
+		if (resume)
+			truncateLastLine(tempFile);
+		this.writer = new BufferedWriter(new OutputStreamWriter(
+				FileUtils.openOutputStream(tempFile, resume), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Function to test if the document has been exported by the previous export
+	 * with the same names and the same content
+	 * @param names Document names, the first name is canonical
+	 * @param digest Document content digest
+	 * @return true if the document has not been changed
+	 */
+	public boolean isUnchanged(List<String> names, String digest) {
+		if (null == previous)
+			return false;
+
+		String entry = getEntry(names.get(0), digest);
+		for (String name : names)
+			if (!entry.equals(previous.get(name)))
+				return false;
+
+		return true;
+	}
+
+	/**
+	 * Function to add document names to the manifest
+	 * @param names Document names, the first name is canonical
+	 * @param digest Document content digest, can be null
+	 * @throws IOException
+	 */
+	public synchronized void add(List<String> names, String digest) throws IOException {
+		String entry = getEntry(names.get(0), digest);
+		for (String name : names) {
+			writer.write(name);
+			writer.write(SEPARATOR);
+			writer.write(entry);
+			writer.newLine();
+		}
+	}
+
+	/**
+	 * Function to write all added names into the temporary file
+	 * @throws IOException
+	 */
+	public synchronized void flush() throws IOException {
+		writer.flush();
+	}
+
+	/**
+	 * Function to finish the completed export. The manifest of the previous export will be replaced
+	 * @throws IOException
+	 */
+	public synchronized void commit() throws IOException {
+		writer.close();
+
+		Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Function to close the manifest of incomplete export. The temporary file will be kept
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		writer.close();
+	}
+
+	private static String getEntry(String canonical, String digest) {
+		return null == digest ? canonical : canonical + SEPARATOR + digest;
+	}
+
+	/**
+	 * Function to remove the partially written last line, left by the interrupted export
+	 * @param file Manifest file
+	 * @throws IOException
+	 */
+	private static void truncateLastLine(File file) throws IOException {
+		if (!file.exists())
+			return;
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			long end = channel.size();
+			while (end > 0) {
+				int length = (int) Math.min(end, BUFFER_SIZE);
+				buffer.clear();
+				buffer.limit(length);
+				while (buffer.hasRemaining())
+					if (channel.read(buffer, end - length + buffer.position()) < 0)
+						break;
+
+				for (int i = length - 1; i >= 0; --i)
+					if (buffer.get(i) == '\n') {
+						channel.truncate(end - length + i + 1);
+						return;
+					}
+
+				end -= length;
+			}
+
+			channel.truncate(0);
+		}
+	}
+
+	private static Map<String, String> load(File file) throws IOException {
+		Map<String, String> entries = new HashMap<String, String>();
+		if (file.exists()) {
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+					new FileInputStream(file), StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					int separator = line.indexOf(SEPARATOR);
+					if (separator > 0)
+						entries.put(line.substring(0, separator), line.substring(separator + 1));
+				}
+			}
+		}
+
+		return entries;
+	}
+}
@@ -0,0 +1,126 @@
+package org.rdswitchboard.exporters.graph;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+import org.rdswitchboard.exporters.graph.collections.LongHashSet;
+import org.rdswitchboard.exporters.graph.collections.LongList;
+import org.rdswitchboard.exporters.graph.source.Edge;
+
+/**
+ * Traversal state of a single exported graph
+ * 
+ * Holds ID's of unique nodes found around the root node, siblings of every traversal
+ * level, relationships selected for export, incomplete nodes and relationships read
+ * by the traversal.
+ * 
+ * Nodes are kept in the order they have been found. Before the document is written,
+ * nodes and relationships are sorted by ID, which is the canonical document order.
+ * 
+ * The object is owned by one export worker and is cleared and reused for every root
+ * node, so the traversal does not need to allocate new collections.
+ * 
+ * @version 1.0.0
+ */
+
+class Neighbourhood {
+	private static final Comparator<Edge> RELATIONSHIP_ORDER = (a, b) -> Long.compare(a.getId(), b.getId());
+	
+	private final LongHashSet ids = new LongHashSet();
+	private final LongList nodes = new LongList();
+	private final List<LongList> levels = new ArrayList<LongList>();
+	private final List<Edge> relationships = new ArrayList<Edge>();
+	private final BitSet incomplete = new BitSet();
+	private final RelationshipBuffer relationshipBuffer = new RelationshipBuffer();
+	
+	/**
+	 * Function to remove all nodes from the neighbourhood
+	 */
+	public void clear() {
+		ids.clear();
+		nodes.clear();
+		for (LongList level : levels)
+			level.clear();
+		relationships.clear();
+		incomplete.clear();
+		relationshipBuffer.clear();
+	}
+	
+	/**
+	 * Function to add node to the neighbourhood
+	 * @param nodeId Node ID
+	 * @return true if node has been added, false if it was added before
+	 */
+	public boolean add(long nodeId) {
+		if (!ids.add(nodeId))
+			return false;
+		
+		nodes.add(nodeId);
+		return true;
+	}
+	
+	public boolean contains(long nodeId) {
+		return ids.contains(nodeId);
+	}
+	
+	public int size() {
+		return nodes.size();
+	}
+	
+	public LongList getNodes() {
+		return nodes;
+	}
+	
+	/**
+	 * Function to sort nodes by ID
+	 */
+	public void sortNodes() {
+		nodes.sort();
+	}
+	
+	/**
+	 * Function to sort relationships, selected for export, by ID
+	 */
+	public void sortRelationships() {
+		relationships.sort(RELATIONSHIP_ORDER);
+	}
+	
+	/**
+	 * Function to return reusable list of relationships, selected for export
+	 * @return List of relationships
+	 */
+	public List<Edge> getRelationships() {
+		return relationships;
+	}
+	
+	/**
+	 * Function to return reusable set of nodes, which have relationships to nodes outside 
+	 * of the neighbourhood. Nodes are indexed by their position in the sorted list of nodes
+	 * @return BitSet
+	 */
+	public BitSet getIncomplete() {
+		return incomplete;
+	}
+	
+	/**
+	 * Function to return reusable buffer of relationships, read during the traversal
+	 * @return RelationshipBuffer
+	 */
+	public RelationshipBuffer getRelationshipBuffer() {
+		return relationshipBuffer;
+	}
+	
+	/**
+	 * Function to return reusable list of node ID's for the traversal level
+	 * @param level int
+	 * @return List of node ID's
+	 */
+	public LongList getLevel(int level) {
+		while (levels.size() <= level)
+			levels.add(new LongList());
+		
+		return levels.get(level);
+	}
+}
@@ -0,0 +1,247 @@
+package org.rdswitchboard.exporters.graph;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.neo4j.graphdb.Direction;
+import org.rdswitchboard.exporters.graph.collections.LruCache;
+import org.rdswitchboard.exporters.graph.metrics.Metrics;
+import org.rdswitchboard.exporters.graph.source.Edge;
+import org.rdswitchboard.exporters.graph.source.GraphSource;
+
+/**
+ * Cache of node relationships and properties, shared by all export workers
+ * 
+ * Neighbouring roots extract almost the same neighbourhoods, so the same nodes (and 
+ * especially the same hub nodes) are read from the store again and again. The cache 
+ * wraps the graph source and keeps immutable copies of node relationship lists and 
+ * property maps in two LRU caches, each getting half of the byte budget. The graph is 
+ * opened read only, so cached values never become stale.
+ * 
+ * Relationship lists are never loaded ahead of the traversal, which can stop early.
+ * They are recorded while the traversal reads them from the source and cached only if
+ * the traversal has read the whole list. Lists, which turn out to be too big to be
+ * cached, are not recorded again: the hub nodes are remembered and always iterated 
+ * directly from the source. Node types are cached separately from the properties, 
+ * because the traversal reads the type of every visited node. If the source holds the 
+ * graph structure in memory, only properties are cached and the whole budget is given 
+ * to them.
+ * 
+ * Values are loaded in the session of the calling thread.
+ * 
+ * @version 1.3.0
+ */
+
+class NodeCache implements GraphSource {
+	private static final long MAP_SIZE = 64;
+	private static final long ENTRY_SIZE = 48;
+	private static final long OBJECT_SIZE = 16;
+	private static final long STRING_SIZE = 40;
+	
+	// the node without type is cached as this instance
+	private static final String NO_TYPE = new String();
+	
+	private final GraphSource source;
+	private final LruCache<List<Edge>> edges;
+	private final LruCache<String> types;
+	private final LruCache<Map<String, Object>> properties;
+	private final Set<Long> hubs = ConcurrentHashMap.newKeySet();
+	private final int maxEdges;
+	private final CacheStats edgeStats;
+	private final CacheStats typeStats;
+	private final CacheStats propertyStats;
+	
+	/**
+	 * Create new cache
+	 * @param source Graph source to cache, will be closed with the cache
+	 * @param capacity Total cache size in bytes, relationships get a half, types 1/16 and properties the rest
+	 * @param metrics Export metrics, which will receive cache statistics
+	 */
+	NodeCache(GraphSource source, long capacity, Metrics metrics) {
+		boolean cacheEdges = !source.isStructureInMemory();
+		
+		this.source = source;
+		this.edges = cacheEdges ? new LruCache<List<Edge>>(capacity / 2, NodeCache::getSize) : null;
+		this.types = cacheEdges ? new LruCache<String>(capacity / 16, type -> ENTRY_SIZE + getSize(type)) : null;
+		this.properties = new LruCache<Map<String, Object>>(cacheEdges ? capacity / 2 - capacity / 16 : capacity, 
+				NodeCache::getSize);
+		this.maxEdges = cacheEdges ? (int) Math.min((edges.getMaxValueSize() - OBJECT_SIZE) / Edge.SIZE, Integer.MAX_VALUE) : 0;
+		this.edgeStats = cacheEdges ? new CacheStats(metrics, "relationships", "Node relationships") : null;
+		this.typeStats = cacheEdges ? new CacheStats(metrics, "types", "Node types") : null;
+		this.propertyStats = new CacheStats(metrics, "properties", "Node properties");
+	}
+	
+	@Override
+	public Session begin() {
+		return source.begin();
+	}
+
+	@Override
+	public long[] findNodes(String label) {
+		return source.findNodes(label);
+	}
+
+	@Override
+	public boolean hasNode(long nodeId) {
+		return source.hasNode(nodeId);
+	}
+
+	@Override
+	public boolean hasLabel(long nodeId, String label) {
+		return source.hasLabel(nodeId, label);
+	}
+
+	@Override
+	public String getNodeType(long nodeId) {
+		if (null == types)
+			return source.getNodeType(nodeId);
+		
+		String type = types.get(nodeId, this::loadType, typeStats);
+		return type == NO_TYPE ? null : type;
+	}
+
+	@Override
+	public Object getProperty(long nodeId, String key) {
+		return source.getProperty(nodeId, key);
+	}
+
+	@Override
+	public Map<String, Object> getProperties(long nodeId) {
+		return properties.get(nodeId, this::loadProperties, propertyStats);
+	}
+
+	@Override
+	public int getDegree(long nodeId) {
+		return source.getDegree(nodeId);
+	}
+
+	@Override
+	public Iterable<Edge> getEdges(long nodeId) {
+		if (null == edges || hubs.contains(nodeId))
+			return source.getEdges(nodeId);
+		
+		List<Edge> list = edges.getIfPresent(nodeId, edgeStats);
+		if (null != list)
+			return list;
+		
+		return () -> new RecordingIterator(nodeId, source.getEdges(nodeId).iterator());
+	}
+
+	/**
+	 * Directed and typed relationships are read from the source, so only the matching 
+	 * part of a big node relationship chain is read
+	 */
+	@Override
+	public Iterable<Edge> getEdges(long nodeId, Direction direction, String... types) {
+		return source.getEdges(nodeId, direction, types);
+	}
+
+	@Override
+	public boolean isStructureInMemory() {
+		return source.isStructureInMemory();
+	}
+
+	@Override
+	public void close() {
+		source.close();
+	}
+	
+	/**
+	 * Function to print cache statistics
+	 */
+	public void report() {
+		System.out.println(String.format("Node cache: %s%s, size %.1f MB", 
+				null != edgeStats ? edgeStats + ", " + typeStats + ", " : "", propertyStats, 
+				((null != edges ? edges.size() + types.size() : 0) + properties.size()) / (1024.0 * 1024.0)));
+	}
+	
+	private String loadType(long nodeId) {
+		String type = source.getNodeType(nodeId);
+		return null == type ? NO_TYPE : type;
+	}
+	
+	private Map<String, Object> loadProperties(long nodeId) {
+		return Collections.unmodifiableMap(source.getProperties(nodeId));
+	}
+	
+	private static long getSize(List<Edge> edges) {
+		return OBJECT_SIZE + (long) edges.size() * Edge.SIZE;
+	}
+	
+	private static long getSize(Map<String, Object> properties) {
+		long size = MAP_SIZE;
+		for (Object value : properties.values())
+			size += ENTRY_SIZE + getSize(value);
+		
+		return size;
+	}
+	
+	/**
+	 * Iterator, recording relationships read from the source. The list is cached when
+	 * the iterator reaches it's end. If the list grows too big to be cached, the recording
+	 * stops and the node is remembered as a hub
+	 */
+	private class RecordingIterator implements Iterator<Edge> {
+		private final long nodeId;
+		private final Iterator<Edge> relationships;
+		private Edge[] list = new Edge[16];
+		private int size;
+		
+		private RecordingIterator(long nodeId, Iterator<Edge> relationships) {
+			this.nodeId = nodeId;
+			this.relationships = relationships;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (relationships.hasNext())
+				return true;
+			
+			if (null != list) {
+				edges.put(nodeId, Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(list, size))), edgeStats);
+				list = null;
+			}
+			
+			return false;
+		}
+
+		@Override
+		public Edge next() {
+			Edge edge = relationships.next();
+			if (null != list) {
+				if (size == maxEdges) {
+					hubs.add(nodeId);
+					edgeStats.rejected();
+					list = null;
+				} else {
+					if (size == list.length)
+						list = Arrays.copyOf(list, (int) Math.min(size * 2L, maxEdges));
+					list[size++] = edge;
+				}
+			}
+			
+			return edge;
+		}
+	}
+	
+	private static long getSize(Object value) {
+		if (value instanceof String)
+			return STRING_SIZE + 2L * ((String) value).length();
+		if (value instanceof String[]) {
+			long size = OBJECT_SIZE;
+			for (String s : (String[]) value)
+				size += 8 + getSize(s);
+			return size;
+		}
+		if (null != value && value.getClass().isArray())
+			return OBJECT_SIZE + 8L * Array.getLength(value);
+		
+		return OBJECT_SIZE;
+	}
+}
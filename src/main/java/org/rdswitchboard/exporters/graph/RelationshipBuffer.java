@@ -0,0 +1,119 @@
+package org.rdswitchboard.exporters.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.rdswitchboard.exporters.graph.collections.LongLongHashMap;
+import org.rdswitchboard.exporters.graph.source.Edge;
+
+/**
+ * Relationships, read during the traversal
+ *
+ * The traversal reads all relationships of the nodes it expands, the buffer keeps them,
+ * so the document can be written without reading them again. Relationships are stored
+ * in primitive arrays: ID, start and end node in a long array and the type index in
+ * an int array. Only complete relationship lists are kept, relationships of the node,
+ * the traversal of which has been stopped, are discarded.
+ *
+ * The object is owned by one export worker and is cleared and reused for every root node.
+ * Relationship type names are kept between uses.
+ *
+ * @version 1.0.0
+ */
+
+class RelationshipBuffer {
+	private static final int DEFAULT_CAPACITY = 256;
+	
+	private final LongLongHashMap ranges = new LongLongHashMap();
+	private final Map<String, Integer> typeIndexes = new HashMap<String, Integer>();
+	private final List<String> types = new ArrayList<String>();
+	
+	private long[] relationships = new long[DEFAULT_CAPACITY * 3];
+	private int[] relationshipTypes = new int[DEFAULT_CAPACITY];
+	private int size;
+	private int committed;
+	
+	/**
+	 * Function to remove all relationships from the buffer
+	 */
+	public void clear() {
+		ranges.clear();
+		size = committed = 0;
+	}
+	
+	/**
+	 * Function to start recording relationships of a node. Relationships, which have
+	 * been added but not committed, will be discarded
+	 */
+	public void begin() {
+		size = committed;
+	}
+	
+	/**
+	 * Function to add relationship of the recorded node
+	 * @param relationship Edge
+	 */
+	public void add(Edge relationship) {
+		if (size == relationshipTypes.length) {
+			relationships = Arrays.copyOf(relationships, size * 6);
+			relationshipTypes = Arrays.copyOf(relationshipTypes, size * 2);
+		}
+		
+		relationships[size * 3] = relationship.getId();
+		relationships[size * 3 + 1] = relationship.getStart();
+		relationships[size * 3 + 2] = relationship.getEnd();
+		relationshipTypes[size] = getTypeIndex(relationship.getType());
+		++size;
+	}
+	
+	/**
+	 * Function to keep all relationships, added since the last {@link #begin()}, as
+	 * the complete list of node relationships
+	 * @param nodeId Recorded node ID
+	 */
+	public void commit(long nodeId) {
+		ranges.put(nodeId, ((long) committed << 32) | size);
+		committed = size;
+	}
+	
+	/**
+	 * Function to return range of the node relationships
+	 * @param nodeId Node ID
+	 * @return the first relationship index in the high 32 bits and the end index in
+	 * the low 32 bits, -1 if node relationships have not been recorded
+	 */
+	public long getRange(long nodeId) {
+		return ranges.get(nodeId, -1);
+	}
+	
+	public long getStart(int index) {
+		return relationships[index * 3 + 1];
+	}
+	
+	public long getEnd(int index) {
+		return relationships[index * 3 + 2];
+	}
+	
+	/**
+	 * Function to create relationship object
+	 * @param index Relationship index
+	 * @return Edge
+	 */
+	public Edge getEdge(int index) {
+		return new Edge(relationships[index * 3], relationships[index * 3 + 1],
+				relationships[index * 3 + 2], types.get(relationshipTypes[index]));
+	}
+	
+	private int getTypeIndex(String type) {
+		Integer index = typeIndexes.get(type);
+		if (null == index) {
+			typeIndexes.put(type, index = types.size());
+			types.add(type);
+		}
+		
+		return index;
+	}
+}
@@ -0,0 +1,142 @@
+package org.rdswitchboard.exporters.graph.collections;
+
+import java.util.Arrays;
+
+/**
+ * Set of primitive long values
+ * 
+ * Open addressing hash set with linear probing. Values are stored without boxing,
+ * so adding or testing a value does not allocate any memory. The set is designed
+ * to be cleared and reused, the allocated table will be kept between uses.
+ * 
+ * The table never shrinks, so after one big use it can be much bigger than the next
+ * ones. The set remembers used slots and clears only them, unless the table is full 
+ * enough to be cleared as a whole.
+ * 
+ * Only non negative values (like Neo4j node or relationship ID's) can be stored.
+ * 
+ * @version 1.1.0
+ */
+
+public class LongHashSet {
+	private static final long EMPTY = -1;
+	private static final int DEFAULT_CAPACITY = 256;
+	private static final long PHI = 0x9E3779B97F4A7C15L;
+	// the table with less than 1/8 of slots used is cleared slot by slot
+	private static final int SPARSE_SHIFT = 3;
+	
+	private long[] table;
+	private int[] slots;
+	private int mask;
+	private int shift;
+	private int size;
+	private int threshold;
+	
+	public LongHashSet() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	public LongHashSet(int expectedSize) {
+		allocate(tableSize(expectedSize));
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	/**
+	 * Function to test if value is in the set
+	 * @param value long
+	 * @return true if the set contains the value, false for negative values
+	 */
+	public boolean contains(long value) {
+		if (value < 0)
+			return false;
+		
+		for (int i = index(value);; i = (i + 1) & mask) {
+			long key = table[i];
+			if (key == value)
+				return true;
+			if (key == EMPTY)
+				return false;
+		}
+	}
+	
+	/**
+	 * Function to add value to the set
+	 * @param value long, must not be negative
+	 * @return true if the value has been added, false if it was in the set already
+	 */
+	public boolean add(long value) {
+		if (value < 0)
+			throw new IllegalArgumentException("Negative values are not supported: " + value);
+		
+		for (int i = index(value);; i = (i + 1) & mask) {
+			long key = table[i];
+			if (key == value)
+				return false;
+			if (key == EMPTY) {
+				table[i] = value;
+				slots[size] = i;
+				if (++size > threshold)
+					rehash(table.length << 1);
+				
+				return true;
+			}
+		}
+	}
+	
+	/**
+	 * Function to remove all values from the set. The table memory will be reused.
+	 */
+	public void clear() {
+		if (size > 0) {
+			if (size < table.length >> SPARSE_SHIFT)
+				for (int i = 0; i < size; ++i)
+					table[slots[i]] = EMPTY;
+			else
+				Arrays.fill(table, EMPTY);
+			size = 0;
+		}
+	}
+	
+	private int index(long value) {
+		return (int) ((value * PHI) >>> shift);
+	}
+	
+	private void allocate(int capacity) {
+		table = new long[capacity];
+		Arrays.fill(table, EMPTY);
+		mask = capacity - 1;
+		shift = 64 - Integer.numberOfTrailingZeros(capacity);
+		threshold = capacity >> 1;
+		slots = new int[threshold + 1];
+	}
+	
+	private void rehash(int capacity) {
+		long[] old = table;
+		allocate(capacity);
+		
+		int used = 0;
+		for (long value : old) 
+			if (value != EMPTY) 
+				for (int i = index(value);; i = (i + 1) & mask) 
+					if (table[i] == EMPTY) {
+						table[i] = value;
+						slots[used++] = i;
+						break;
+					}
+	}
+	
+	private static int tableSize(int expectedSize) {
+		int capacity = 16;
+		while (capacity >> 1 < expectedSize)
+			capacity <<= 1;
+		
+		return capacity;
+	}
+}
@@ -0,0 +1,63 @@
+package org.rdswitchboard.exporters.graph.collections;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive long values
+ * 
+ * Values are stored without boxing. The list is designed to be cleared and reused, 
+ * the allocated array will be kept between uses.
+ * 
+ * @version 1.0.0
+ */
+
+public class LongList {
+	private static final int DEFAULT_CAPACITY = 16;
+	
+	private long[] values;
+	private int size;
+	
+	public LongList() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	public LongList(int capacity) {
+		values = new long[Math.max(1, capacity)];
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	public long get(int index) {
+		if (index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+		
+		return values[index];
+	}
+	
+	public void add(long value) {
+		if (size == values.length)
+			values = Arrays.copyOf(values, size * 2);
+		
+		values[size++] = value;
+	}
+	
+	/**
+	 * Function to sort values in ascending order
+	 */
+	public void sort() {
+		Arrays.sort(values, 0, size);
+	}
+	
+	/**
+	 * Function to remove all values. The allocated array will be kept
+	 */
+	public void clear() {
+		size = 0;
+	}
+}
@@ -0,0 +1,147 @@
+package org.rdswitchboard.exporters.graph.collections;
+
+import java.util.Arrays;
+
+/**
+ * Map of primitive long keys to primitive long values
+ *
+ * Open addressing hash map with linear probing, the same as {@link LongHashSet}.
+ * Keys and values are stored without boxing, so putting or getting a value does not
+ * allocate any memory. The map is designed to be cleared and reused, the allocated
+ * tables will be kept between uses. Like the set, the map clears only used slots 
+ * of a sparse table.
+ *
+ * Only non negative keys (like Neo4j node or relationship ID's) can be stored.
+ *
+ * @version 1.1.0
+ */
+
+public class LongLongHashMap {
+	private static final long EMPTY = -1;
+	private static final int DEFAULT_CAPACITY = 256;
+	private static final long PHI = 0x9E3779B97F4A7C15L;
+	private static final int SPARSE_SHIFT = 3;
+	
+	private long[] keys;
+	private long[] values;
+	private int[] slots;
+	private int mask;
+	private int shift;
+	private int size;
+	private int threshold;
+	
+	public LongLongHashMap() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	public LongLongHashMap(int expectedSize) {
+		allocate(tableSize(expectedSize));
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	/**
+	 * Function to return value of the key
+	 * @param key long
+	 * @param defaultValue value to return if the map does not contain the key
+	 * @return value of the key or defaultValue, defaultValue for negative keys
+	 */
+	public long get(long key, long defaultValue) {
+		if (key < 0)
+			return defaultValue;
+		
+		for (int i = index(key);; i = (i + 1) & mask) {
+			long k = keys[i];
+			if (k == key)
+				return values[i];
+			if (k == EMPTY)
+				return defaultValue;
+		}
+	}
+	
+	/**
+	 * Function to set value of the key
+	 * @param key long, must not be negative
+	 * @param value long
+	 */
+	public void put(long key, long value) {
+		if (key < 0)
+			throw new IllegalArgumentException("Negative keys are not supported: " + key);
+		
+		for (int i = index(key);; i = (i + 1) & mask) {
+			long k = keys[i];
+			if (k == key) {
+				values[i] = value;
+				return;
+			}
+			if (k == EMPTY) {
+				keys[i] = key;
+				values[i] = value;
+				slots[size] = i;
+				if (++size > threshold)
+					rehash(keys.length << 1);
+				
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Function to remove all keys from the map. The table memory will be reused.
+	 */
+	public void clear() {
+		if (size > 0) {
+			if (size < keys.length >> SPARSE_SHIFT)
+				for (int i = 0; i < size; ++i)
+					keys[slots[i]] = EMPTY;
+			else
+				Arrays.fill(keys, EMPTY);
+			size = 0;
+		}
+	}
+	
+	private int index(long key) {
+		return (int) ((key * PHI) >>> shift);
+	}
+	
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new long[capacity];
+		Arrays.fill(keys, EMPTY);
+		mask = capacity - 1;
+		shift = 64 - Integer.numberOfTrailingZeros(capacity);
+		threshold = capacity >> 1;
+		slots = new int[threshold + 1];
+	}
+	
+	private void rehash(int capacity) {
+		long[] oldKeys = keys;
+		long[] oldValues = values;
+		allocate(capacity);
+		
+		int used = 0;
+		for (int j = 0; j < oldKeys.length; ++j)
+			if (oldKeys[j] != EMPTY)
+				for (int i = index(oldKeys[j]);; i = (i + 1) & mask)
+					if (keys[i] == EMPTY) {
+						keys[i] = oldKeys[j];
+						values[i] = oldValues[j];
+						slots[used++] = i;
+						break;
+					}
+	}
+	
+	private static int tableSize(int expectedSize) {
+		int capacity = 16;
+		while (capacity >> 1 < expectedSize)
+			capacity <<= 1;
+		
+		return capacity;
+	}
+}
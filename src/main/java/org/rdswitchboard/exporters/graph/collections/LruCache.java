@@ -0,0 +1,172 @@
+package org.rdswitchboard.exporters.graph.collections;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Thread safe, size aware LRU cache with long keys
+ * 
+ * The cache is split into segments, each guarded by it's own lock, so threads
+ * accessing different keys rarely wait for each other. Every segment holds up to
+ * the equal share of the total byte budget, the size of every value is estimated 
+ * by the supplied function. When the segment exceeds it's budget, the least recently
+ * used values are evicted. A value bigger than the segment budget is never cached,
+ * null values are not cached either.
+ * 
+ * Values are loaded outside the segment lock, so two threads can load the same 
+ * value at once. Both will get a valid value and only one will be kept. Values, 
+ * which are built by the caller, can be looked up and added separately.
+ * 
+ * @version 1.1.0
+ */
+
+public class LruCache<V> {
+	private static final int SEGMENT_BITS = 4;
+	private static final int SEGMENTS = 1 << SEGMENT_BITS;
+	private static final long PHI = 0x9E3779B97F4A7C15L;
+	
+	private final Segment<V>[] segments;
+	private final ToLongFunction<V> sizer;
+	
+	/**
+	 * Create new cache
+	 * @param capacity Maximum total size of cached values in bytes
+	 * @param sizer Function to estimate value size in bytes
+	 */
+	@SuppressWarnings("unchecked")
+	public LruCache(long capacity, ToLongFunction<V> sizer) {
+		this.sizer = sizer;
+		this.segments = new Segment[SEGMENTS];
+		for (int i = 0; i < SEGMENTS; ++i)
+			segments[i] = new Segment<V>(capacity / SEGMENTS);
+	}
+	
+	/**
+	 * Function to return cached value, or load and cache it
+	 * @param key long
+	 * @param loader Function to load the value if it is not cached, can return null
+	 * @param stats Statistics to update, can be null
+	 * @return value
+	 */
+	public V get(long key, LongFunction<V> loader, Stats stats) {
+		V value = getIfPresent(key, stats);
+		if (null != value)
+			return value;
+		
+		value = loader.apply(key);
+		if (null != value)
+			put(key, value, stats);
+		
+		return value;
+	}
+	
+	/**
+	 * Function to return cached value without loading it
+	 * @param key long
+	 * @param stats Statistics to update with hit or miss, can be null
+	 * @return value or null if it is not cached
+	 */
+	public V getIfPresent(long key, Stats stats) {
+		Segment<V> segment = getSegment(key);
+		
+		V value;
+		synchronized (segment) {
+			value = segment.map.get(key);
+		}
+		
+		if (null != stats) {
+			if (null != value)
+				stats.hit();
+			else
+				stats.miss();
+		}
+		
+		return value;
+	}
+	
+	/**
+	 * Function to cache the value, evicting the least recently used values
+	 * @param key long
+	 * @param value Value, must not be null
+	 * @param stats Statistics to update with evictions or rejection, can be null
+	 * @return false if the value is too big to be cached
+	 */
+	public boolean put(long key, V value, Stats stats) {
+		Segment<V> segment = getSegment(key);
+		
+		long size = sizer.applyAsLong(value);
+		if (size > segment.capacity) {
+			if (null != stats)
+				stats.rejected();
+			return false;
+		}
+		
+		int evicted = 0;
+		synchronized (segment) {
+			V previous = segment.map.put(key, value);
+			segment.size += size;
+			if (null != previous)
+				segment.size -= sizer.applyAsLong(previous);
+			
+			for (Iterator<Map.Entry<Long, V>> it = segment.map.entrySet().iterator(); 
+					segment.size > segment.capacity && it.hasNext(); ++evicted) {
+				segment.size -= sizer.applyAsLong(it.next().getValue());
+				it.remove();
+			}
+		}
+		
+		if (null != stats && evicted > 0)
+			stats.evicted(evicted);
+		
+		return true;
+	}
+	
+	/**
+	 * Function to return maximal size of a single cached value
+	 * @return long
+	 */
+	public long getMaxValueSize() {
+		return segments[0].capacity;
+	}
+	
+	/**
+	 * Function to return estimated size of all cached values in bytes
+	 * @return long
+	 */
+	public long size() {
+		long size = 0;
+		for (Segment<V> segment : segments)
+			synchronized (segment) {
+				size += segment.size;
+			}
+		
+		return size;
+	}
+	
+	private Segment<V> getSegment(long key) {
+		return segments[(int) ((key * PHI) >>> (64 - SEGMENT_BITS))];
+	}
+	
+	/**
+	 * Cache statistics receiver
+	 */
+	public interface Stats {
+		void hit();
+		void miss();
+		void evicted(int count);
+		void rejected();
+	}
+	
+	private static class Segment<V> {
+		private final long capacity;
+		private final LinkedHashMap<Long, V> map = new LinkedHashMap<Long, V>(16, 0.75f, true);
+		private long size;
+		
+		public Segment(long capacity) {
+			this.capacity = capacity;
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package org.rdswitchboard.exporters.graph.events;
+
+/**
+ * Record of the export of a single root node
+ * 
+ * A span is created with {@link RootSpans#begin()} when the root export begins and must be 
+ * committed when the export is finished. The values should only be set if the span is enabled.
+ * 
+ * @version 1.0.0
+ */
+
+public interface RootSpan {
+	/**
+	 * Function to test if the span will be recorded
+	 * @return true if the span is recorded
+	 */
+	boolean isEnabled();
+	
+	/**
+	 * Function to set the root node and it's neighbourhood
+	 * @param nodeId Root node ID
+	 * @param nodes Number of nodes in the neighbourhood
+	 * @param relationships Number of exported relationships
+	 */
+	void setGraph(long nodeId, int nodes, int relationships);
+	
+	/**
+	 * Function to set time, spent in every export phase
+	 * @param traversal Neighbourhood traversal time in nanoseconds
+	 * @param serialization Document serialization time in nanoseconds
+	 * @param sink Time to pass the document to all sinks in nanoseconds
+	 */
+	void setTimes(long traversal, long serialization, long sink);
+	
+	/**
+	 * Function to set document size
+	 * @param bytes Document size in bytes
+	 */
+	void setBytes(long bytes);
+	
+	/**
+	 * Function to finish and record the span
+	 */
+	void commit();
+}
@@ -0,0 +1,71 @@
+package org.rdswitchboard.exporters.graph.events;
+
+import java.util.function.Supplier;
+
+/**
+ * Factory of root export spans
+ * 
+ * If the program has been built and runs on a JDK with Java Flight Recorder, every span 
+ * will be recorded as JFR event org.rdswitchboard.ExportRoot. Otherwise all spans are 
+ * disabled and cost nothing.
+ * 
+ * @version 1.0.1
+ */
+
+public class RootSpans {
+	private static final String JFR_FACTORY = "org.rdswitchboard.exporters.graph.events.JfrRootSpan$Factory";
+	
+	private static final RootSpan NOOP = new RootSpan() {
+		@Override
+		public boolean isEnabled() {
+			return false;
+		}
+
+		@Override
+		public void setGraph(long nodeId, int nodes, int relationships) {
+		}
+
+		@Override
+		public void setTimes(long traversal, long serialization, long sink) {
+		}
+
+		@Override
+		public void setBytes(long bytes) {
+		}
+
+		@Override
+		public void commit() {
+		}
+	};
+	
+	private static final Supplier<RootSpan> factory = createFactory();
+	
+	/**
+	 * Function to begin new span
+	 * @return RootSpan
+	 */
+	public static RootSpan begin() {
+		return factory.get();
+	}
+	
+	/**
+	 * Function to test if spans can be recorded with JFR
+	 * @return true if JFR events are available
+	 */
+	public static boolean isAvailable() {
+		return begin() != NOOP;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static Supplier<RootSpan> createFactory() {
+		try {
+			Supplier<RootSpan> jfr = (Supplier<RootSpan>) Class.forName(JFR_FACTORY).getDeclaredConstructor().newInstance();
+			// the event class will fail to load, if JFR is not available at run time
+			jfr.get();
+			
+			return jfr;
+		} catch (Exception | LinkageError e) {
+			return () -> NOOP;
+		}
+	}
+}
@@ -0,0 +1,327 @@
+package org.rdswitchboard.exporters.graph.generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.unsafe.batchinsert.BatchInserter;
+import org.neo4j.unsafe.batchinsert.BatchInserters;
+import org.rdswitchboard.exporters.graph.Exporter;
+import org.rdswitchboard.exporters.graph.Neo4jException;
+import org.rdswitchboard.exporters.graph.Labels.NodeSource;
+import org.rdswitchboard.exporters.graph.Labels.NodeType;
+import org.rdswitchboard.exporters.graph.source.MemorySource;
+
+/**
+ * Generator of synthetic research graphs
+ *
+ * Writes a new Neo4j instance with the same labels and properties as exported
+ * research graph has, so the export can be timed without production data.
+ * The same parameters and seed always produce the same graph.
+ *
+ * Nodes are datasets, publications, researchers, grants and institutions of
+ * different sources, keyed by local_id, doi or orcid property. Some nodes are known
+ * under several keys. The first nodes are hub institutions. Every other node creates
+ * a number of relationships, drawn either from uniform or from power-law distribution
+ * with the given average. A share of all relationships link to hubs, with the most
+ * of them linking to the first hubs, the rest link to random nodes.
+ *
+ * Nodes are created with sequential ID's, so the generator does not need to keep
+ * any per node state and can create graphs of hundreds of millions nodes.
+ *
+ * The same graph can also be generated in memory, for tests and benchmarks which do
+ * not need a Neo4j store.
+ *
+ * @version 1.1.0
+ */
+
+public class Generator {
+	public static final String DEGREES_UNIFORM = "uniform";
+	public static final String DEGREES_POWER_LAW = "powerlaw";
+
+	private static final String PROPERTY_TYPE = "type";
+	private static final String PROPERTY_TITLE = "title";
+	private static final String PROPERTY_LOCAL_ID = "local_id";
+	private static final String PROPERTY_DOI = "doi";
+	private static final String PROPERTY_ORCID_ID = "orcid";
+
+	private static final RelationshipType RELATED_TO = RelationshipType.withName("relatedTo");
+	private static final RelationshipType KNOWN_AS = RelationshipType.withName("knownAs");
+
+	private static final double POWER_LAW_EXPONENT = 2.5;
+	private static final int HUB_SKEW = 3;
+	private static final long PROGRESS_INTERVAL = 1000000;
+
+	private String neo4jFolder;
+	private long nodes = 1000000;
+	private long seed = 0;
+	private String degrees = DEGREES_POWER_LAW;
+	private double averageDegree = 4;
+	private int hubs = 100;
+	private double hubShare = 0.1;
+
+	public void setNeo4jFolder(String neo4jFolder) {
+		this.neo4jFolder = neo4jFolder;
+	}
+
+	public void setNodes(long nodes) {
+		this.nodes = nodes;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Set distribution of node relationships
+	 * @param degrees uniform or powerlaw
+	 */
+	public void setDegrees(String degrees) {
+		this.degrees = degrees;
+	}
+
+	/**
+	 * Set average number of relationships, created by every node.
+	 * The average number of relationships per node will be twice as big.
+	 * @param averageDegree double
+	 */
+	public void setAverageDegree(double averageDegree) {
+		this.averageDegree = averageDegree;
+	}
+
+	public void setHubs(int hubs) {
+		this.hubs = hubs;
+	}
+
+	/**
+	 * Set share of relationships, linking to hub institutions
+	 * @param hubShare value between 0 and 1
+	 */
+	public void setHubShare(double hubShare) {
+		this.hubShare = hubShare;
+	}
+
+	/**
+	 * Function to generate the graph
+	 * @throws Neo4jException
+	 * @throws IOException
+	 */
+	public void generate() throws Neo4jException, IOException {
+		validate();
+
+		File db = Exporter.GetDbPath(neo4jFolder);
+		if (db.list().length > 0)
+			throw new Neo4jException("The " + db + " folder is not empty. Please provide path to a new Neo4j instance");
+
+		// the exporter requires Neo4j configuration file, an empty one will use default settings
+		File conf = new File(neo4jFolder, "conf/neo4j.conf");
+		if (!conf.exists())
+			FileUtils.touch(conf);
+
+		BatchInserter inserter = BatchInserters.inserter(db);
+		try {
+			generate(new Target() {
+				@Override
+				public long createNode(Map<String, Object> properties, Label source, Label type) {
+					return inserter.createNode(properties, source, type);
+				}
+
+				@Override
+				public void createRelationship(long start, long end, RelationshipType type) {
+					inserter.createRelationship(start, end, type, null);
+				}
+			});
+		} finally {
+			inserter.shutdown();
+		}
+	}
+
+	/**
+	 * Function to generate the graph in memory
+	 * @return MemorySource
+	 * @throws Neo4jException
+	 */
+	public MemorySource generateInMemory() throws Neo4jException {
+		validate();
+		if (nodes > Integer.MAX_VALUE)
+			throw new Neo4jException("In-memory graph can not have more than " + Integer.MAX_VALUE + " nodes");
+		
+		MemorySource.Builder builder = new MemorySource.Builder();
+		generate(new Target() {
+			@Override
+			public long createNode(Map<String, Object> properties, Label source, Label type) {
+				return builder.addNode(properties, source.name(), type.name());
+			}
+
+			@Override
+			public void createRelationship(long start, long end, RelationshipType type) {
+				builder.addRelationship(start, end, type.name());
+			}
+		});
+		
+		return builder.build();
+	}
+
+	private void validate() throws Neo4jException {
+		if (!DEGREES_UNIFORM.equals(degrees) && !DEGREES_POWER_LAW.equals(degrees))
+			throw new Neo4jException("Unknown degree distribution: " + degrees);
+		if (hubs > nodes)
+			throw new Neo4jException("The number of hubs can not exceed the number of nodes");
+	}
+
+	private void generate(Target target) throws Neo4jException {
+		Random random = new Random(seed);
+		long start = System.currentTimeMillis();
+
+		long first = -1;
+		for (long i = 0; i < nodes; ++i) {
+			long id = createNode(target, random, i);
+			if (first < 0)
+				first = id;
+			else if (id != first + i)
+				throw new Neo4jException("Unexpected node ID: " + id + ", the store must be empty");
+
+			if ((i + 1) % PROGRESS_INTERVAL == 0)
+				System.out.println("Created " + (i + 1) + " nodes");
+		}
+
+		long relationships = 0;
+		for (long i = hubs; i < nodes; ++i) {
+			int degree = getDegree(random);
+			for (int j = 0; j < degree; ++j) {
+				long other = random.nextDouble() < hubShare && hubs > 0
+						? getHub(random)
+						: (long) (random.nextDouble() * nodes);
+				if (other != i) {
+					target.createRelationship(first + i, first + other,
+							random.nextInt(20) == 0 ? KNOWN_AS : RELATED_TO);
+					++relationships;
+				}
+			}
+
+			if ((i + 1) % PROGRESS_INTERVAL == 0)
+				System.out.println("Linked " + (i + 1) + " nodes, created " + relationships + " relationships");
+		}
+
+		System.out.println("Created " + nodes + " nodes and " + relationships + " relationships in "
+				+ (System.currentTimeMillis() - start) + " ms");
+	}
+
+	private long createNode(Target target, Random random, long index) {
+		Label source;
+		Label type;
+		String property;
+		String key;
+
+		if (index < hubs) {
+			source = NodeSource.ands;
+			type = NodeType.institution;
+			property = PROPERTY_LOCAL_ID;
+			key = "http://nla.gov.au/nla.party-" + index;
+		} else {
+			int kind = random.nextInt(100);
+			if (kind < 35) {
+				type = NodeType.dataset;
+				switch (random.nextInt(3)) {
+				case 0:
+					source = NodeSource.dara;
+					property = PROPERTY_DOI;
+					key = getDoi(random, index);
+					break;
+				case 1:
+					source = NodeSource.nci;
+					property = PROPERTY_LOCAL_ID;
+					key = "https://geonetwork.nci.org.au/geonetwork/srv/eng/catalog.search#/metadata/" + index;
+					break;
+				default:
+					source = NodeSource.ands;
+					property = PROPERTY_LOCAL_ID;
+					key = "ands.org.au::" + index;
+				}
+			} else if (kind < 60) {
+				type = NodeType.publication;
+				switch (random.nextInt(3)) {
+				case 0:
+					source = NodeSource.dara;
+					property = PROPERTY_DOI;
+					key = getDoi(random, index);
+					break;
+				case 1:
+					source = NodeSource.gesis;
+					property = PROPERTY_LOCAL_ID;
+					key = "ZA" + index;
+					break;
+				default:
+					source = NodeSource.crossref;
+					property = PROPERTY_DOI;
+					key = getDoi(random, index);
+				}
+			} else if (kind < 85) {
+				type = NodeType.researcher;
+				if (random.nextBoolean()) {
+					source = NodeSource.orcid;
+					property = PROPERTY_ORCID_ID;
+					key = String.format("0000-000%d-%04d-%04d", random.nextInt(4), (index / 10000) % 10000, index % 10000);
+				} else {
+					source = NodeSource.ands;
+					property = PROPERTY_LOCAL_ID;
+					key = "ands.org.au::" + index;
+				}
+			} else if (kind < 95) {
+				type = NodeType.grant;
+				source = random.nextBoolean() ? NodeSource.arc : NodeSource.nhmrc;
+				property = PROPERTY_LOCAL_ID;
+				key = "http://purl.org/au-research/grants/" + source.name() + "/" + index;
+			} else {
+				type = NodeType.institution;
+				source = NodeSource.ands;
+				property = PROPERTY_LOCAL_ID;
+				key = "http://nla.gov.au/nla.party-" + index;
+			}
+		}
+
+		Map<String, Object> properties = new HashMap<String, Object>();
+		properties.put(PROPERTY_TYPE, type.name());
+		properties.put(PROPERTY_TITLE, "Synthetic " + type.name() + " " + index);
+		// some records are known under several keys
+		if (random.nextInt(10) == 0)
+			properties.put(property, new String[] { key, key + "-v2" });
+		else
+			properties.put(property, key);
+
+		return target.createNode(properties, source, type);
+	}
+
+	private static String getDoi(Random random, long index) {
+		return "10." + (1000 + random.nextInt(9000)) + "/" + Long.toString(index, 36) + "(" + random.nextInt(100) + ")";
+	}
+
+	private int getDegree(Random random) {
+		if (DEGREES_UNIFORM.equals(degrees))
+			return (int) Math.round(random.nextDouble() * 2 * averageDegree);
+
+		// Pareto distribution, scaled to have the requested average
+		double scale = averageDegree * (POWER_LAW_EXPONENT - 2) / (POWER_LAW_EXPONENT - 1);
+		double degree = scale * Math.pow(1 - random.nextDouble(), -1 / (POWER_LAW_EXPONENT - 1));
+
+		return (int) Math.min(Math.min(nodes - 1, Integer.MAX_VALUE), Math.round(degree));
+	}
+
+	private long getHub(Random random) {
+		// the lower the hub index, the more relationships it gets
+		return (long) (hubs * Math.pow(random.nextDouble(), HUB_SKEW));
+	}
+
+	/**
+	 * Storage of generated nodes and relationships
+	 */
+	private interface Target {
+		long createNode(Map<String, Object> properties, Label source, Label type);
+		void createRelationship(long start, long end, RelationshipType type);
+	}
+}
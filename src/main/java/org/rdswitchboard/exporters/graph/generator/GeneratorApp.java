@@ -0,0 +1,70 @@
+package org.rdswitchboard.exporters.graph.generator;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import org.parboiled.common.StringUtils;
+
+/**
+ * Main class for synthetic research graph generator
+ * 
+ * Parameters: 
+ * 	 $1 : Configuration file (generator.conf)
+ * 
+ * To run, please execute from the main project folder
+ * $ java -cp <program name>.jar org.rdswitchboard.exporters.graph.generator.GeneratorApp generator.conf
+ * 
+ * @version 1.0.0
+ */
+
+public class GeneratorApp {
+	
+	private static void loadProperties(Properties properties, String propertiesFile) throws IOException {
+		try (InputStream in = new FileInputStream(propertiesFile)) {
+			properties.load(in);
+		}
+	}
+	
+	public static void main(String[] args) {
+		try {
+			String configuration = args.length > 0 ? args[0] : null;
+			if (StringUtils.isEmpty(configuration)) {
+				configuration = "generator.conf";
+			}
+			
+			Properties properties = new Properties();
+			loadProperties(properties, configuration);
+			
+			String neo4jFolder = properties.getProperty("neo4j");
+			long nodes = Long.parseLong(properties.getProperty("nodes", "1000000"));
+			long seed = Long.parseLong(properties.getProperty("seed", "0"));
+			String degrees = properties.getProperty("degrees", Generator.DEGREES_POWER_LAW);
+			double averageDegree = Double.parseDouble(properties.getProperty("average.degree", "4"));
+			int hubs = Integer.parseInt(properties.getProperty("hubs", "100"));
+			double hubShare = Double.parseDouble(properties.getProperty("hub.share", "0.1"));
+			
+			if (StringUtils.isEmpty(neo4jFolder)) {
+				System.out.println("Neo4j folder can not be empty");
+				
+				System.exit(1);
+			}
+			
+			Generator generator = new Generator();
+			generator.setNeo4jFolder(neo4jFolder);
+			generator.setNodes(nodes);
+			generator.setSeed(seed);
+			generator.setDegrees(degrees);
+			generator.setAverageDegree(averageDegree);
+			generator.setHubs(hubs);
+			generator.setHubShare(hubShare);
+			generator.generate();
+			
+		} catch (Exception e) {
+			e.printStackTrace();
+			
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package org.rdswitchboard.exporters.graph.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic counter, which can be updated from many threads without locking
+ * 
+ * @version 1.0.0
+ */
+
+public class Counter {
+	private final String name;
+	private final String help;
+	private final LongAdder value = new LongAdder();
+	
+	Counter(String name, String help) {
+		this.name = name;
+		this.help = help;
+	}
+	
+	public void increment() {
+		value.increment();
+	}
+	
+	public void add(long delta) {
+		value.add(delta);
+	}
+	
+	public long get() {
+		return value.sum();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getHelp() {
+		return help;
+	}
+}
@@ -0,0 +1,123 @@
+package org.rdswitchboard.exporters.graph.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of recorded values, which can be updated from many threads without locking
+ * 
+ * Values are counted in buckets with power of two upper bounds, from 2^minExponent 
+ * to 2^maxExponent. Smaller values are counted in the first bucket, bigger values
+ * in the last, unbounded bucket. Percentiles are estimated as the upper bound of the
+ * bucket, which contains the percentile, but never exceed the maximal recorded value.
+ * 
+ * @version 1.0.0
+ */
+
+public class Histogram {
+	private final String name;
+	private final String help;
+	private final int minExponent;
+	private final AtomicLongArray buckets;
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+	
+	Histogram(String name, String help, int minExponent, int maxExponent) {
+		this.name = name;
+		this.help = help;
+		this.minExponent = minExponent;
+		this.buckets = new AtomicLongArray(maxExponent - minExponent + 2);
+	}
+	
+	/**
+	 * Function to record a single value
+	 * @param value Non negative value
+	 */
+	public void record(long value) {
+		// the smallest exponent, for which 2^exponent >= value
+		int exponent = value <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(value - 1);
+		int index = Math.max(0, Math.min(exponent - minExponent, buckets.length() - 1));
+		
+		buckets.incrementAndGet(index);
+		count.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+	
+	/**
+	 * Function to record time, passed since the start time
+	 * @param startTime Start time, returned by {@link System#nanoTime()}
+	 */
+	public void recordSince(long startTime) {
+		record(System.nanoTime() - startTime);
+	}
+	
+	public long getCount() {
+		return count.sum();
+	}
+	
+	public long getSum() {
+		return sum.sum();
+	}
+	
+	public long getMax() {
+		return max.get();
+	}
+	
+	/**
+	 * Function to return number of buckets, including the last unbounded one
+	 * @return int
+	 */
+	public int getBuckets() {
+		return buckets.length();
+	}
+	
+	/**
+	 * Function to return upper bound of the bucket 
+	 * @param bucket Bucket index
+	 * @return upper bound or Long.MAX_VALUE for the last bucket
+	 */
+	public long getBound(int bucket) {
+		return bucket < buckets.length() - 1 ? 1L << (minExponent + bucket) : Long.MAX_VALUE;
+	}
+	
+	/**
+	 * Function to return number of values, counted in the bucket
+	 * @param bucket Bucket index
+	 * @return long
+	 */
+	public long getBucketCount(int bucket) {
+		return buckets.get(bucket);
+	}
+	
+	/**
+	 * Function to estimate percentile
+	 * @param percentile Percentile between 0 and 1
+	 * @return estimated value or 0 if no values has been recorded
+	 */
+	public long getPercentile(double percentile) {
+		long total = 0;
+		for (int i = 0; i < buckets.length(); ++i)
+			total += buckets.get(i);
+		
+		long target = (long) Math.ceil(percentile * total);
+		long counted = 0;
+		for (int i = 0; i < buckets.length(); ++i) {
+			counted += buckets.get(i);
+			if (counted > 0 && counted >= target) 
+				return Math.min(getBound(i), getMax());
+		}
+		
+		return 0;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getHelp() {
+		return help;
+	}
+}
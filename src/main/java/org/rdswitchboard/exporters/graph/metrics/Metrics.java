@@ -0,0 +1,164 @@
+package org.rdswitchboard.exporters.graph.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Registry of export metrics
+ * 
+ * Holds named counters and histograms and writes their current values either as JSON 
+ * document or in Prometheus text exposition format. Metrics are written in the order 
+ * they have been registered. Registering the same name twice returns the existing metric.
+ * 
+ * Durations are recorded in nanoseconds and sizes in bytes or nodes, the unit is a part of the metric name.
+ * 
+ * @version 1.0.0
+ */
+
+public class Metrics {
+	public static final String FORMAT_JSON = "json";
+	public static final String FORMAT_PROMETHEUS = "prometheus";
+	
+	private static final double[] PERCENTILES = { 0.5, 0.9, 0.99 };
+	private static final String[] PERCENTILE_NAMES = { "p50", "p90", "p99" };
+	
+	private final Map<String, Counter> counters = new LinkedHashMap<String, Counter>();
+	private final Map<String, Histogram> histograms = new LinkedHashMap<String, Histogram>();
+	
+	/**
+	 * Function to register a counter
+	 * @param name Counter name
+	 * @param help Counter description
+	 * @return Counter
+	 */
+	public synchronized Counter counter(String name, String help) {
+		Counter counter = counters.get(name);
+		if (null == counter)
+			counters.put(name, counter = new Counter(name, help));
+		
+		return counter;
+	}
+	
+	/**
+	 * Function to register a histogram
+	 * @param name Histogram name
+	 * @param help Histogram description
+	 * @param minExponent Exponent of the first bucket bound
+	 * @param maxExponent Exponent of the last bounded bucket bound
+	 * @return Histogram
+	 */
+	public synchronized Histogram histogram(String name, String help, int minExponent, int maxExponent) {
+		Histogram histogram = histograms.get(name);
+		if (null == histogram)
+			histograms.put(name, histogram = new Histogram(name, help, minExponent, maxExponent));
+		
+		return histogram;
+	}
+	
+	/**
+	 * Function to register a histogram of durations in nanoseconds, from 1 microsecond to about 1 minute
+	 * @param name Histogram name
+	 * @param help Histogram description
+	 * @return Histogram
+	 */
+	public Histogram timer(String name, String help) {
+		return histogram(name, help, 10, 36);
+	}
+	
+	/**
+	 * Function to write all metrics in the requested format
+	 * @param writer Writer
+	 * @param format json or prometheus
+	 * @throws IOException
+	 */
+	public void write(Writer writer, String format) throws IOException {
+		if (FORMAT_PROMETHEUS.equals(format))
+			writePrometheus(writer);
+		else if (FORMAT_JSON.equals(format))
+			writeJson(writer);
+		else
+			throw new IllegalArgumentException("Unknown metrics format: " + format);
+	}
+	
+	/**
+	 * Function to write all metrics as JSON document. Histograms are written with 
+	 * count, sum, max and percentiles, without buckets.
+	 * @param writer Writer
+	 * @throws IOException
+	 */
+	public void writeJson(Writer writer) throws IOException {
+		try (JsonGenerator generator = new JsonFactory().createGenerator(writer)) {
+			generator.useDefaultPrettyPrinter();
+			generator.writeStartObject();
+			generator.writeNumberField("timestamp", System.currentTimeMillis());
+			
+			generator.writeObjectFieldStart("counters");
+			for (Counter counter : getCounters()) 
+				generator.writeNumberField(counter.getName(), counter.get());
+			generator.writeEndObject();
+			
+			generator.writeObjectFieldStart("histograms");
+			for (Histogram histogram : getHistograms()) {
+				generator.writeObjectFieldStart(histogram.getName());
+				generator.writeNumberField("count", histogram.getCount());
+				generator.writeNumberField("sum", histogram.getSum());
+				generator.writeNumberField("max", histogram.getMax());
+				for (int i = 0; i < PERCENTILES.length; ++i)
+					generator.writeNumberField(PERCENTILE_NAMES[i], histogram.getPercentile(PERCENTILES[i]));
+				generator.writeEndObject();
+			}
+			generator.writeEndObject();
+			
+			generator.writeEndObject();
+		}
+	}
+	
+	/**
+	 * Function to write all metrics in Prometheus text exposition format
+	 * @param writer Writer
+	 * @throws IOException
+	 */
+	public void writePrometheus(Writer writer) throws IOException {
+		for (Counter counter : getCounters()) {
+			writeHeader(writer, counter.getName(), counter.getHelp(), "counter");
+			writer.write(counter.getName() + " " + counter.get() + "\n");
+		}
+		
+		for (Histogram histogram : getHistograms()) {
+			String name = histogram.getName();
+			writeHeader(writer, name, histogram.getHelp(), "histogram");
+			
+			long cumulative = 0;
+			for (int i = 0; i < histogram.getBuckets(); ++i) {
+				long bound = histogram.getBound(i);
+				cumulative += histogram.getBucketCount(i);
+				writer.write(name + "_bucket{le=\"" + (bound == Long.MAX_VALUE ? "+Inf" : Long.toString(bound)) 
+						+ "\"} " + cumulative + "\n");
+			}
+			writer.write(name + "_sum " + histogram.getSum() + "\n");
+			writer.write(name + "_count " + cumulative + "\n");
+		}
+		
+		writer.flush();
+	}
+	
+	private static void writeHeader(Writer writer, String name, String help, String type) throws IOException {
+		writer.write("# HELP " + name + " " + help + "\n");
+		writer.write("# TYPE " + name + " " + type + "\n");
+	}
+	
+	private synchronized List<Counter> getCounters() {
+		return new ArrayList<Counter>(counters.values());
+	}
+	
+	private synchronized List<Histogram> getHistograms() {
+		return new ArrayList<Histogram>(histograms.values());
+	}
+}
@@ -0,0 +1,86 @@
+package org.rdswitchboard.exporters.graph.metrics;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Periodic dump of the metrics into a local file
+ * 
+ * The file is replaced atomically on every dump, so it can be read at any time 
+ * during a long export. The last dump is written when the reporter is closed.
+ * 
+ * @version 1.0.0
+ */
+
+public class MetricsReporter implements Closeable {
+	private static final String TEMP_EXTENSION = ".tmp";
+	
+	private final Metrics metrics;
+	private final File file;
+	private final String format;
+	private final ScheduledExecutorService scheduler;
+	
+	/**
+	 * Create new reporter and start periodic dumps
+	 * @param metrics Metrics
+	 * @param file Metrics file name
+	 * @param format json or prometheus
+	 * @param interval Interval between dumps in seconds, 0 to dump only when closed
+	 */
+	public MetricsReporter(Metrics metrics, String file, String format, int interval) {
+		this.metrics = metrics;
+		this.file = new File(file);
+		this.format = format;
+		
+		if (!Metrics.FORMAT_JSON.equals(format) && !Metrics.FORMAT_PROMETHEUS.equals(format))
+			throw new IllegalArgumentException("Unknown metrics format: " + format);
+		
+		if (interval > 0) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "metrics");
+				thread.setDaemon(true);
+				return thread;
+			});
+			scheduler.scheduleAtFixedRate(this::dump, interval, interval, TimeUnit.SECONDS);
+		} else
+			scheduler = null;
+	}
+	
+	/**
+	 * Function to write current metrics into the file
+	 */
+	public synchronized void dump() {
+		File tempFile = new File(file.getPath() + TEMP_EXTENSION);
+		try {
+			try (Writer writer = new OutputStreamWriter(FileUtils.openOutputStream(tempFile), StandardCharsets.UTF_8)) {
+				metrics.write(writer, format);
+			}
+			
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			System.out.println("Unable to write metrics file: " + file + ". Error: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Function to stop periodic dumps and write the final metrics
+	 */
+	@Override
+	public void close() {
+		if (null != scheduler)
+			scheduler.shutdownNow();
+		
+		dump();
+	}
+}
@@ -0,0 +1,101 @@
+package org.rdswitchboard.exporters.graph.sink;
+
+import java.io.Closeable;
+import java.util.Arrays;
+
+/**
+ * Compressor of exported documents
+ * 
+ * Every document is compressed once by the export worker and all sinks store the 
+ * compressed data. The compression name is used as HTTP Content-Encoding of S3 objects,
+ * files get a matching extension. 
+ * 
+ * The compressor keeps it's output buffer and the native compression state between 
+ * documents, so it is owned by one export worker and must be closed after the export.
+ * The output does not depend on the time or the previous documents, so an unchanged 
+ * document is always compressed into the same bytes and keeps it's S3 ETag.
+ * 
+ * @version 1.0.0
+ */
+
+public abstract class Compressor implements Closeable {
+	public static final String NONE = "none";
+	public static final String GZIP = "gzip";
+	public static final String ZSTD = "zstd";
+	
+	private static final int DEFAULT_CAPACITY = 64 * 1024;
+	
+	protected byte[] buffer = new byte[DEFAULT_CAPACITY];
+	protected int size;
+	
+	/**
+	 * Function to create new compressor
+	 * @param compression none, gzip or zstd
+	 * @param level Compression level, 0 for the default level
+	 * @return Compressor, null if compression is none
+	 * @throws IllegalArgumentException if compression is not supported
+	 */
+	public static Compressor create(String compression, int level) {
+		switch (compression) {
+		case NONE:
+			return null;
+		case GZIP:
+			return new GzipCompressor(level);
+		case ZSTD:
+			return new ZstdCompressor(level);
+		default:
+			throw new IllegalArgumentException("Unknown compression: " + compression + ", supported are none, gzip and zstd");
+		}
+	}
+	
+	/**
+	 * Function to return file extension of compressed documents
+	 * @param compression none, gzip or zstd
+	 * @return Extension, empty if compression is none
+	 */
+	public static String getExtension(String compression) {
+		switch (compression) {
+		case GZIP:
+			return ".gz";
+		case ZSTD:
+			return ".zst";
+		default:
+			return "";
+		}
+	}
+	
+	/**
+	 * Function to compress the document. The result will replace the previous document
+	 * @param data Document data
+	 * @param offset Offset of the document in the data array
+	 * @param length Document length in bytes
+	 */
+	public abstract void compress(byte[] data, int offset, int length);
+	
+	/**
+	 * Function to return reusable buffer, holding the compressed document
+	 * @return byte array
+	 */
+	public byte[] getBuffer() {
+		return buffer;
+	}
+	
+	/**
+	 * Function to return compressed document length
+	 * @return length in bytes
+	 */
+	public int getSize() {
+		return size;
+	}
+	
+	/**
+	 * Function to release the native compression state
+	 */
+	@Override
+	public abstract void close();
+	
+	protected void ensureCapacity(long capacity) {
+		if (buffer.length < capacity)
+			buffer = Arrays.copyOf(buffer, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(capacity, buffer.length * 2L)));
+	}
+}
@@ -0,0 +1,45 @@
+package org.rdswitchboard.exporters.graph.sink;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Destination of exported documents
+ * 
+ * The sink will receive every serialized document together with all it's names. 
+ * The first name is the canonical one: the document data must be stored only once 
+ * under that name, all other names are aliases and should refer to the same data 
+ * (as links or copies), without serializing or uploading the document again.
+ * 
+ * The data array can be reused by the caller after write() returns, so the sink 
+ * must either consume or copy the data before returning.
+ * 
+ * Sinks can be called from several export workers at once and must be thread safe.
+ * 
+ * @version 1.0.0
+ */
+
+public interface DocumentSink extends Closeable {
+	/**
+	 * Function to write a document
+	 * @param names Document names, relative to the sink root. The first name is canonical
+	 * @param data Document data
+	 * @param offset Offset of the document in the data array
+	 * @param length Document length in bytes
+	 * @throws IOException
+	 */
+	void write(List<String> names, byte[] data, int offset, int length) throws IOException;
+	
+	/**
+	 * Function to wait until all documents, written before the call, have been stored
+	 * @throws IOException
+	 */
+	void flush() throws IOException;
+	
+	/**
+	 * Function to return number of documents, which have been written, but have not been stored yet
+	 * @return int
+	 */
+	int getQueueSize();
+}
@@ -0,0 +1,197 @@
+package org.rdswitchboard.exporters.graph.sink;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sink to write documents as files into local folder
+ *
+ * The document will be written once, under it's canonical name. All aliases will
+ * be created as hard links to the canonical file, or as copies if the file system
+ * does not support hard links. Compressed documents get the compression extension.
+ *
+ * Documents are written with {@link FileChannel} through a direct buffer, reused by
+ * the export worker thread. Created folders are remembered, so every label folder
+ * is checked and created only once.
+ *
+ * Optionally, every file and alias is written under a temporary name first and then
+ * renamed, so readers never see a partially written file. Without atomic writes, the
+ * existing file is deleted first, because it can be a link from the previous export
+ * and must be replaced, not overwritten.
+ *
+ * @version 1.3.1
+ */
+
+public class FileSink implements DocumentSink {
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final String TEMP_EXTENSION = ".tmp";
+	private static final int MAX_LINK_ATTEMPTS = 3;
+	
+	private final File folder;
+	private final String extension;
+	private final boolean atomic;
+	private final Set<Path> folders = ConcurrentHashMap.newKeySet();
+	private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+	
+	private volatile boolean links = true;
+	private volatile boolean linked;
+	
+	public FileSink(String folder) {
+		this(folder, "");
+	}
+	
+	public FileSink(String folder, String extension) {
+		this(folder, extension, false);
+	}
+	
+	/**
+	 * Create new sink
+	 * @param folder Output folder
+	 * @param extension Extension to append to every document name, for example .gz for compressed documents
+	 * @param atomic true to write files under temporary names and rename them when they are complete
+	 */
+	public FileSink(String folder, String extension, boolean atomic) {
+		this.folder = new File(folder);
+		this.extension = extension;
+		this.atomic = atomic;
+	}
+	
+	@Override
+	public void write(List<String> names, byte[] data, int offset, int length) throws IOException {
+		Path path = getPath(names.get(0));
+		
+		if (atomic) {
+			Path temp = getTempPath(path);
+			writeFile(temp, data, offset, length);
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} else {
+			Files.deleteIfExists(path);
+			writeFile(path, data, offset, length);
+		}
+		
+		for (int i = 1; i < names.size(); ++i)
+			link(path, getPath(names.get(i)));
+	}
+	
+	@Override
+	public void flush() throws IOException {
+	}
+	
+	/**
+	 * Files are written synchronously, so there is no queue
+	 */
+	@Override
+	public int getQueueSize() {
+		return 0;
+	}
+	
+	@Override
+	public void close() throws IOException {
+	}
+	
+	/**
+	 * Function to return path of the document file. The parent folder will be created, if it does not exist
+	 * @param name Document name
+	 * @return Path
+	 * @throws IOException
+	 */
+	private Path getPath(String name) throws IOException {
+		Path path = new File(folder, name + extension).toPath();
+		Path parent = path.getParent();
+		if (!folders.contains(parent)) {
+			Files.createDirectories(parent);
+			folders.add(parent);
+		}
+		
+		return path;
+	}
+	
+	/**
+	 * Function to return temporary path, unique for the writing thread,
+	 * so the same name can be written by two workers at once
+	 */
+	private static Path getTempPath(Path path) {
+		return path.resolveSibling(path.getFileName() + "." + Thread.currentThread().getId() + TEMP_EXTENSION);
+	}
+	
+	private void writeFile(Path path, byte[] data, int offset, int length) throws IOException {
+		ByteBuffer buffer = buffers.get();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (length > 0) {
+				int chunk = Math.min(length, buffer.capacity());
+				buffer.clear();
+				buffer.put(data, offset, chunk);
+				buffer.flip();
+				while (buffer.hasRemaining())
+					channel.write(buffer);
+				
+				offset += chunk;
+				length -= chunk;
+			}
+		}
+	}
+	
+	private void link(Path file, Path alias) throws IOException {
+		Path path = atomic ? getTempPath(alias) : alias;
+		Files.deleteIfExists(path);
+		
+		if (!links || !createLink(path, file))
+			Files.copy(file, path, StandardCopyOption.REPLACE_EXISTING);
+		
+		if (atomic)
+			Files.move(path, alias, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	/**
+	 * Function to create hard link. Links are disabled for the rest of the export only,
+	 * if the file system does not support them. The alias, created by another worker
+	 * in between, is replaced, and any other error copies just this alias
+	 * @param path Link path
+	 * @param file Canonical file
+	 * @return true if the link has been created
+	 */
+	private boolean createLink(Path path, Path file) {
+		for (int attempt = 0; attempt < MAX_LINK_ATTEMPTS; ++attempt) {
+			try {
+				Files.createLink(path, file);
+				linked = true;
+				return true;
+			} catch (FileAlreadyExistsException e) {
+				try {
+					Files.deleteIfExists(path);
+				} catch (IOException ex) {
+					return false;
+				}
+			} catch (UnsupportedOperationException e) {
+				disableLinks(e);
+				return false;
+			} catch (FileSystemException e) {
+				// the file system, which has never created a link, does not support them
+				if (!linked)
+					disableLinks(e);
+				return false;
+			} catch (IOException e) {
+				return false;
+			}
+		}
+		
+		return false;
+	}
+	
+	private void disableLinks(Exception e) {
+		links = false;
+		System.out.println("Unable to create hard link, aliases will be copied. Error: " + e.getMessage());
+	}
+}
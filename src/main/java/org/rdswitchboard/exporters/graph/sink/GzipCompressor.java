@@ -0,0 +1,61 @@
+package org.rdswitchboard.exporters.graph.sink;
+
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Gzip compressor
+ * 
+ * Writes gzip member with raw deflate data, reusing one Deflater for all documents.
+ * The header has no file name and zero modification time, so the output depends 
+ * only on the document.
+ * 
+ * @version 1.0.0
+ */
+
+class GzipCompressor extends Compressor {
+	private static final byte[] HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+	private static final int TRAILER_SIZE = 8;
+	
+	private final Deflater deflater;
+	private final CRC32 crc = new CRC32();
+	
+	public GzipCompressor(int level) {
+		deflater = new Deflater(level > 0 ? level : Deflater.DEFAULT_COMPRESSION, true);
+	}
+	
+	@Override
+	public void compress(byte[] data, int offset, int length) {
+		System.arraycopy(HEADER, 0, buffer, 0, HEADER.length);
+		size = HEADER.length;
+		
+		deflater.reset();
+		deflater.setInput(data, offset, length);
+		deflater.finish();
+		while (!deflater.finished()) {
+			if (size == buffer.length)
+				ensureCapacity(buffer.length * 2L);
+			
+			size += deflater.deflate(buffer, size, buffer.length - size);
+		}
+		
+		crc.reset();
+		crc.update(data, offset, length);
+		
+		ensureCapacity(size + TRAILER_SIZE);
+		writeInt((int) crc.getValue());
+		writeInt(length);
+	}
+	
+	@Override
+	public void close() {
+		deflater.end();
+	}
+	
+	private void writeInt(int value) {
+		buffer[size++] = (byte) value;
+		buffer[size++] = (byte) (value >> 8);
+		buffer[size++] = (byte) (value >> 16);
+		buffer[size++] = (byte) (value >> 24);
+	}
+}
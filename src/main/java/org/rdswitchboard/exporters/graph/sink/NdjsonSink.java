@@ -0,0 +1,232 @@
+package org.rdswitchboard.exporters.graph.sink;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+/**
+ * Sink to append documents as newline delimited JSON into large rolling files
+ *
+ * Bulk loaders read a few large files much faster than millions of small ones, and
+ * appending to a file is much cheaper than creating one. Every document is written
+ * as a single line, holding all document names and the document itself:
+ *
+ *   {"names":["dara/10.1%2F0.json","ands/id-0.json"],"graph":{"nodes":[...],"relationships":[...]}}
+ *
+ * The document must be a single line of JSON, as written by the streaming writer.
+ * Lines are collected in a buffer and appended to the file with {@link FileChannel}.
+ * The file is rolled over when it reaches the maximum size. Until then the file has
+ * .part extension, so loaders can pick up completed files only. Files are forced to
+ * disk before they get their final name. Flushing the sink forces the current file
+ * without completing it, and the checkpoint records it's name and size, so the
+ * resumed export truncates the file to that size and continues it.
+ *
+ * Files are named by the prefix and the sequence number, the prefix should be unique
+ * for every export, so the resumed or repeated export does not replace files of the
+ * previous one.
+ *
+ * @version 1.2.0
+ */
+
+public class NdjsonSink implements DocumentSink {
+	public static final String EXTENSION = ".ndjson";
+	
+	private static final String PART_EXTENSION = ".part";
+	private static final int BUFFER_SIZE = 1024 * 1024;
+	
+	private static final byte[] LINE_START = "{\"names\":[".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] GRAPH_START = "],\"graph\":".getBytes(StandardCharsets.UTF_8);
+	private static final byte[] LINE_END = "}\n".getBytes(StandardCharsets.UTF_8);
+	
+	private final File folder;
+	private final String prefix;
+	private final long maxBytes;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	
+	private FileChannel channel;
+	private Path path;
+	private long size;
+	private int sequence;
+	private String flushedFile;
+	private long flushedSize;
+	
+	/**
+	 * Create new sink
+	 * @param folder Output folder
+	 * @param prefix Prefix of file names, relative to the output folder
+	 * @param maxBytes Maximum file size in bytes, a file always contains at least one document
+	 */
+	public NdjsonSink(String folder, String prefix, long maxBytes) {
+		this.folder = new File(folder);
+		this.prefix = prefix;
+		this.maxBytes = maxBytes;
+	}
+	
+	@Override
+	public synchronized void write(List<String> names, byte[] data, int offset, int length) throws IOException {
+		if (null != channel && size >= maxBytes)
+			roll();
+		if (null == channel)
+			open();
+		
+		put(LINE_START, 0, LINE_START.length);
+		for (int i = 0; i < names.size(); ++i) {
+			if (i > 0)
+				put((byte) ',');
+			putString(names.get(i));
+		}
+		put(GRAPH_START, 0, GRAPH_START.length);
+		put(data, offset, length);
+		put(LINE_END, 0, LINE_END.length);
+	}
+	
+	/**
+	 * All written lines are appended to the current file and forced to disk. The file
+	 * is not completed, it's name and size are recorded for the checkpoint instead
+	 */
+	@Override
+	public synchronized void flush() throws IOException {
+		if (null != channel) {
+			drain();
+			channel.force(false);
+		}
+		
+		flushedFile = null != channel ? getName() : null;
+		flushedSize = size;
+	}
+	
+	/**
+	 * Function to return name of the file, which was being written at the last flush
+	 * @return File name relative to the output folder, or null if no file was open
+	 */
+	public synchronized String getFlushedFile() {
+		return flushedFile;
+	}
+	
+	/**
+	 * Function to return size of the file at the last flush
+	 * @return long
+	 */
+	public synchronized long getFlushedSize() {
+		return flushedSize;
+	}
+	
+	/**
+	 * Function to continue the file of the interrupted export. Lines written after the 
+	 * checkpoint are truncated, they will be written again by the resumed export. 
+	 * The file, which has been completed since the checkpoint, is left as it is.
+	 * @param name File name, as returned by {@link #getFlushedFile()}
+	 * @param size File size, as returned by {@link #getFlushedSize()}
+	 * @throws IOException
+	 */
+	public synchronized void resume(String name, long size) throws IOException {
+		Path part = new File(folder, name + PART_EXTENSION).toPath();
+		if (null != channel || !Files.exists(part))
+			return;
+		
+		path = part;
+		channel = FileChannel.open(path, StandardOpenOption.WRITE);
+		channel.truncate(size);
+		channel.position(size);
+		this.size = size;
+	}
+	
+	/**
+	 * Lines are appended synchronously, so there is no queue
+	 */
+	@Override
+	public int getQueueSize() {
+		return 0;
+	}
+	
+	@Override
+	public synchronized void close() throws IOException {
+		if (null != channel)
+			roll();
+	}
+	
+	private void open() throws IOException {
+		String name = String.format("%s-%06d%s", prefix, ++sequence, EXTENSION);
+		path = new File(folder, name + PART_EXTENSION).toPath();
+		FileUtils.forceMkdir(path.getParent().toFile());
+		
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		size = 0;
+	}
+	
+	/**
+	 * Function to complete the current file and give it the final name
+	 * @throws IOException
+	 */
+	private void roll() throws IOException {
+		try {
+			drain();
+			channel.force(true);
+		} finally {
+			channel.close();
+			channel = null;
+		}
+		
+		Files.move(path, path.resolveSibling(getName()), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	/**
+	 * Function to return final name of the current file
+	 * @return String
+	 */
+	private String getName() {
+		String name = path.getFileName().toString();
+		return name.substring(0, name.length() - PART_EXTENSION.length());
+	}
+	
+	/**
+	 * Function to write JSON string in quotes, escaped and encoded as UTF-8 by Jackson
+	 * @param value String
+	 * @throws IOException
+	 */
+	private void putString(String value) throws IOException {
+		byte[] bytes = JsonStringEncoder.getInstance().quoteAsUTF8(value);
+		put((byte) '"');
+		put(bytes, 0, bytes.length);
+		put((byte) '"');
+	}
+	
+	private void put(byte b) throws IOException {
+		if (!buffer.hasRemaining())
+			drain();
+		buffer.put(b);
+		++size;
+	}
+	
+	private void put(byte[] bytes, int offset, int length) throws IOException {
+		size += length;
+		while (length > 0) {
+			if (!buffer.hasRemaining())
+				drain();
+			
+			int chunk = Math.min(length, buffer.remaining());
+			buffer.put(bytes, offset, chunk);
+			offset += chunk;
+			length -= chunk;
+		}
+	}
+	
+	private void drain() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+}
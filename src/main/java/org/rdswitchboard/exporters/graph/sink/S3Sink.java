@@ -0,0 +1,414 @@
+package org.rdswitchboard.exporters.graph.sink;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.rdswitchboard.exporters.graph.metrics.Counter;
+import org.rdswitchboard.exporters.graph.metrics.Histogram;
+import org.rdswitchboard.exporters.graph.metrics.Metrics;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.CannedAccessControlList;
+import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+
+/**
+ * Sink to upload documents into S3 bucket
+ * 
+ * The uploads are asynchronous. Every document is copied into a bounded queue and 
+ * uploaded by a pool of uploader threads, so the export workers do not wait for the 
+ * network. If the queue is full, write() will block until uploaders catch up.
+ * 
+ * The document data is uploaded once, under it's canonical name. All aliases are 
+ * created with S3 server side copy of the canonical object.
+ * 
+ * Optionally, the ETag of existing objects can be checked first. The ETag of a simple
+ * S3 object is MD5 digest of it's content, so the objects having the same ETag as 
+ * the document will not be uploaded or copied again.
+ * 
+ * Failed uploads are retried up to {@link S3Sink#retries} times, after an exponentially 
+ * growing, randomized delay, so a throttled bucket gets time to recover. The client should
+ * not retry requests itself, otherwise every retry of the sink makes several requests. 
+ * Documents which still can not be uploaded are collected and reported when the sink is 
+ * closed. If an uploader thread fails with an error, the following write, flush or close 
+ * throws it as IOException, instead of waiting for documents which will never be uploaded.
+ * 
+ * Request latencies, retries and errors are recorded in export metrics.
+ * 
+ * Compressed documents are uploaded under the same names with Content-Encoding header,
+ * so HTTP clients decompress them transparently. Aliases copy the header with the data.
+ * 
+ * Content type is chosen by the document name: Smile and CBOR documents, shards and
+ * shard indexes get their own media types, all other documents are uploaded as JSON.
+ * 
+ * @version 1.6.0
+ */
+
+public class S3Sink implements DocumentSink {
+	private static final String CONTENT_TYPE = "application/json; charset=UTF-8";
+	private static final String CONTENT_TYPE_SMILE = "application/x-jackson-smile";
+	private static final String CONTENT_TYPE_CBOR = "application/cbor";
+	private static final String CONTENT_TYPE_SHARD = "application/x-tar";
+	private static final String CONTENT_TYPE_INDEX = "text/tab-separated-values; charset=UTF-8";
+	private static final int MAX_REPORTED_FAILURES = 100;
+	private static final int HTTP_NOT_FOUND = 404;
+	private static final long RETRY_DELAY_MS = 100;
+	private static final long MAX_RETRY_DELAY_MS = 10000;
+	private static final long WAIT_MS = 1000;
+	
+	private static final Upload STOP = new Upload(0, null, null);
+	
+	private final AmazonS3 s3client;
+	private final String bucket;
+	private final String key;
+	private final boolean publicReadRights;
+	private final int retries;
+	private final boolean checkETag;
+	private final String contentEncoding;
+	
+	private final BlockingQueue<Upload> queue;
+	private final List<Thread> uploaders = new ArrayList<Thread>();
+	private final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+	private final AtomicLong unchanged = new AtomicLong();
+	private final AtomicLong sequence = new AtomicLong();
+	private final ConcurrentSkipListSet<Long> pending = new ConcurrentSkipListSet<Long>();
+	private final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+	
+	private final Histogram putTime;
+	private final Histogram copyTime;
+	private final Counter retryCounter;
+	private final Counter errorCounter;
+	private final Counter unchangedCounter;
+	
+	/**
+	 * Create new S3 sink and start uploader threads
+	 * @param s3client AmazonS3 client
+	 * @param bucket S3 Bucket name
+	 * @param key S3 Key prefix
+	 * @param publicReadRights true to grant public read rights for every uploaded object
+	 * @param threads number of uploader threads
+	 * @param queueSize maximum number of documents, waiting for upload
+	 * @param retries number of retries for every failed upload
+	 * @param checkETag true to skip objects, which already have the same content
+	 * @param contentEncoding Content-Encoding of compressed documents, null if documents are not compressed
+	 * @param metrics Export metrics
+	 */
+	public S3Sink(AmazonS3 s3client, String bucket, String key, boolean publicReadRights, 
+			int threads, int queueSize, int retries, boolean checkETag, String contentEncoding, Metrics metrics) {
+		this.s3client = s3client;
+		this.bucket = bucket;
+		this.key = key;
+		this.publicReadRights = publicReadRights;
+		this.retries = retries;
+		this.checkETag = checkETag;
+		this.contentEncoding = contentEncoding;
+		this.queue = new ArrayBlockingQueue<Upload>(Math.max(1, queueSize));
+		this.putTime = metrics.timer("export_s3_put_nanoseconds", "Time to upload a document to S3, including retries");
+		this.copyTime = metrics.timer("export_s3_copy_nanoseconds", "Time to copy S3 object to an alias, including retries");
+		this.retryCounter = metrics.counter("export_s3_retries_total", "Retried S3 requests");
+		this.errorCounter = metrics.counter("export_s3_errors_total", "S3 objects, which have failed to upload or copy");
+		this.unchangedCounter = metrics.counter("export_s3_unchanged_total", "S3 objects, which already had the same content");
+		
+		for (int i = 0; i < Math.max(1, threads); ++i) {
+			Thread uploader = new Thread(this::upload, "s3-uploader-" + i);
+			uploader.setDaemon(true);
+			uploader.start();
+			
+			uploaders.add(uploader);
+		}
+	}
+	
+	@Override
+	public void write(List<String> names, byte[] data, int offset, int length) throws IOException {
+		checkError();
+		
+		long id = sequence.incrementAndGet();
+		pending.add(id);
+		try {
+			enqueue(new Upload(id, new ArrayList<String>(names), Arrays.copyOfRange(data, offset, offset + length)));
+		} catch (InterruptedException | IOException e) {
+			completed(id);
+			if (e instanceof IOException)
+				throw (IOException) e;
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for S3 upload queue");
+		}
+	}
+	
+	@Override
+	public void flush() throws IOException {
+		long last = sequence.get();
+		try {
+			synchronized (pending) {
+				Long oldest;
+				while ((oldest = pending.ceiling(0L)) != null && oldest <= last && null == error.get())
+					pending.wait();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for S3 uploads");
+		}
+		
+		checkError();
+	}
+	
+	/**
+	 * Function to return number of documents, waiting for upload
+	 * @return int
+	 */
+	@Override
+	public int getQueueSize() {
+		return queue.size();
+	}
+	
+	/**
+	 * Function to return number of objects, which have not been uploaded, 
+	 * because they already had the same content
+	 * @return long
+	 */
+	public long getUnchanged() {
+		return unchanged.get();
+	}
+	
+	/**
+	 * Function to return failed uploads
+	 * @return List of failure descriptions
+	 */
+	public List<String> getFailures() {
+		return failures;
+	}
+
+	/**
+	 * Function to wait until all documents have been uploaded and stop uploader threads.
+	 * All failed uploads will be reported.
+	 * @throws IOException if an uploader thread has failed
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			for (int i = 0; i < uploaders.size() && null == error.get(); ++i)
+				enqueue(STOP);
+			if (null == error.get())
+				for (Thread uploader : uploaders)
+					uploader.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for S3 uploads");
+		} catch (IOException e) {
+			// the error is thrown after the failures have been reported
+		}
+		
+		if (checkETag)
+			System.out.println("Skipped " + unchanged.get() + " unchanged S3 objects");
+		
+		synchronized (failures) {
+			if (!failures.isEmpty()) {
+				System.err.println("Failed to upload " + failures.size() + " objects to S3:");
+				for (String failure : failures.subList(0, Math.min(failures.size(), MAX_REPORTED_FAILURES)))
+					System.err.println(failure);
+			}
+		}
+		
+		checkError();
+	}
+	
+	private void upload() {
+		try {
+			Upload upload;
+			while ((upload = queue.take()) != STOP) {
+				try {
+					upload(upload);
+				} catch (RuntimeException | Error e) {
+					failures.add(upload.names.get(0) + ": " + e);
+					errorCounter.increment();
+					error.compareAndSet(null, e);
+					throw e;
+				} finally {
+					completed(upload.id);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private void upload(Upload upload) throws InterruptedException {
+		String eTag = null;
+		if (checkETag) 
+			eTag = DigestUtils.md5Hex(upload.data);
+		
+		String name = upload.names.get(0);
+		if (putObject(name, upload.data, eTag)) {
+			for (int i = 1; i < upload.names.size(); ++i) 
+				copyObject(name, upload.names.get(i), eTag);
+		} else {
+			for (int i = 1; i < upload.names.size(); ++i) {
+				failures.add(upload.names.get(i) + ": canonical object " + name + " has not been uploaded");
+				errorCounter.increment();
+			}
+		}
+	}
+	
+	/**
+	 * Function to put the upload into the queue, the queue is not waited for, if uploaders have failed
+	 * @param upload Upload
+	 * @throws InterruptedException
+	 * @throws IOException if an uploader thread has failed
+	 */
+	private void enqueue(Upload upload) throws InterruptedException, IOException {
+		while (!queue.offer(upload, WAIT_MS, TimeUnit.MILLISECONDS))
+			checkError();
+	}
+	
+	private void checkError() throws IOException {
+		Throwable e = error.get();
+		if (null != e)
+			throw new IOException("S3 uploader has failed. Error: " + e, e);
+	}
+	
+	private static String getContentType(String name) {
+		if (name.endsWith(".smile"))
+			return CONTENT_TYPE_SMILE;
+		if (name.endsWith(".cbor"))
+			return CONTENT_TYPE_CBOR;
+		if (name.endsWith(ShardSink.SHARD_EXTENSION))
+			return CONTENT_TYPE_SHARD;
+		if (name.endsWith(ShardSink.INDEX_EXTENSION))
+			return CONTENT_TYPE_INDEX;
+		
+		return CONTENT_TYPE;
+	}
+	
+	private boolean putObject(String name, byte[] data, String eTag) throws InterruptedException {
+		long startTime = System.nanoTime();
+		try {
+			for (int attempt = 0;; ++attempt) {
+				try {
+					if (null != eTag && eTag.equals(getETag(name))) {
+						unchanged.incrementAndGet();
+						unchangedCounter.increment();
+						return true;
+					}
+					
+					ObjectMetadata metadata = new ObjectMetadata();
+					if (null != contentEncoding)
+						metadata.setContentEncoding(contentEncoding);
+					metadata.setContentType(getContentType(name));
+					metadata.setContentLength(data.length);
+					
+					PutObjectRequest request = new PutObjectRequest(bucket, key + name, new ByteArrayInputStream(data), metadata);
+					if (publicReadRights)
+						request.setCannedAcl(CannedAccessControlList.PublicRead);
+					
+					s3client.putObject(request);
+					return true;
+				} catch (RuntimeException e) {
+					if (attempt >= retries) {
+						failures.add(name + ": " + e.getMessage());
+						errorCounter.increment();
+						return false;
+					}
+					
+					retryCounter.increment();
+					backoff(attempt);
+				}
+			}
+		} finally {
+			putTime.recordSince(startTime);
+		}
+	}
+	
+	private void copyObject(String name, String alias, String eTag) throws InterruptedException {
+		long startTime = System.nanoTime();
+		try {
+			for (int attempt = 0;; ++attempt) {
+				try {
+					if (null != eTag && eTag.equals(getETag(alias))) {
+						unchanged.incrementAndGet();
+						unchangedCounter.increment();
+						return;
+					}
+					
+					CopyObjectRequest request = new CopyObjectRequest(bucket, key + name, bucket, key + alias);
+					if (publicReadRights)
+						request.setCannedAccessControlList(CannedAccessControlList.PublicRead);
+					
+					s3client.copyObject(request);
+					return;
+				} catch (RuntimeException e) {
+					if (attempt >= retries) {
+						failures.add(alias + ": " + e.getMessage());
+						errorCounter.increment();
+						return;
+					}
+					
+					retryCounter.increment();
+					backoff(attempt);
+				}
+			}
+		} finally {
+			copyTime.recordSince(startTime);
+		}
+	}
+	
+	/**
+	 * Function to wait before the retry, the delay is doubled with every attempt and 
+	 * randomized, so uploaders do not retry all at once
+	 * @param attempt Number of the failed attempt, starting from 0
+	 * @throws InterruptedException
+	 */
+	private static void backoff(int attempt) throws InterruptedException {
+		long delay = Math.min(MAX_RETRY_DELAY_MS, RETRY_DELAY_MS << Math.min(attempt, 16));
+		Thread.sleep(delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1));
+	}
+	
+	private void completed(long id) {
+		pending.remove(id);
+		synchronized (pending) {
+			pending.notifyAll();
+		}
+	}
+	
+	/**
+	 * Function to return ETag of existing object
+	 * @param name Object name
+	 * @return ETag or null if object does not exists
+	 */
+	private String getETag(String name) {
+		try {
+			return s3client.getObjectMetadata(bucket, key + name).getETag();
+		} catch (AmazonServiceException e) {
+			if (e.getStatusCode() == HTTP_NOT_FOUND)
+				return null;
+			
+			throw e;
+		}
+	}
+	
+	private static class Upload {
+		private final long id;
+		private final List<String> names;
+		private final byte[] data;
+		
+		public Upload(long id, List<String> names, byte[] data) {
+			this.id = id;
+			this.names = names;
+			this.data = data;
+		}
+	}
+}
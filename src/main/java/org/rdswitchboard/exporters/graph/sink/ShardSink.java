@@ -0,0 +1,288 @@
+package org.rdswitchboard.exporters.graph.sink;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.rdswitchboard.exporters.graph.metrics.Counter;
+import org.rdswitchboard.exporters.graph.metrics.Histogram;
+import org.rdswitchboard.exporters.graph.metrics.Metrics;
+
+/**
+ * Sink to pack documents into shards
+ *
+ * Millions of small documents are expensive to store one by one: every S3 object is
+ * a separate request and every file is a separate directory entry. The sink collects
+ * documents into a shard in memory and passes the completed shard to the target sink
+ * as a single document. The shard is rolled over, when it reaches the maximum size
+ * or the maximum number of documents, and when the sink is flushed or closed.
+ *
+ * Shards are tar archives. The document data is stored once under it's canonical name,
+ * aliases are stored as hard links to it, so the shard can be unpacked with any tar
+ * tool. Names longer than tar name field are stored in pax extended headers.
+ *
+ * Every shard is followed by it's index, a text file with a line per document name:
+ *
+ *   name &lt;TAB&gt; offset &lt;TAB&gt; length
+ *
+ * The offset is the position of the document data in the shard, so a single document
+ * can be read with a range request without reading the whole shard. Aliases point to
+ * the data of the canonical name.
+ *
+ * Shards are named by the prefix and the sequence number, the prefix should be unique
+ * for every export, so the resumed or repeated export does not replace shards of the
+ * previous one.
+ *
+ * @version 1.0.1
+ */
+
+public class ShardSink implements DocumentSink {
+	public static final String SHARD_EXTENSION = ".tar";
+	public static final String INDEX_EXTENSION = ".idx";
+	
+	private static final int BLOCK_SIZE = 512;
+	private static final int NAME_SIZE = 100;
+	private static final int INITIAL_CAPACITY = 1024 * 1024;
+	private static final byte TYPE_FILE = '0';
+	private static final byte TYPE_LINK = '1';
+	private static final byte TYPE_PAX = 'x';
+	private static final String PAX_PATH = "path";
+	private static final String PAX_LINK_PATH = "linkpath";
+	
+	private final DocumentSink target;
+	private final String prefix;
+	private final String extension;
+	private final long maxBytes;
+	private final int maxDocuments;
+	private final long mtime;
+	
+	private final Counter shardCounter;
+	private final Histogram shardSize;
+	private final Histogram shardDocuments;
+	
+	private final StringBuilder index = new StringBuilder();
+	private byte[] shard = new byte[INITIAL_CAPACITY];
+	private int size;
+	private int documents;
+	private int sequence;
+	
+	/**
+	 * Create new sink
+	 * @param target Sink to store shards and their indexes
+	 * @param prefix Prefix of shard names, relative to the target root
+	 * @param extension Extension to append to every document name, for example .gz for compressed documents
+	 * @param maxBytes Maximum shard size in bytes
+	 * @param maxDocuments Maximum number of documents in a shard, 0 for no limit
+	 * @param metrics Export metrics
+	 */
+	public ShardSink(DocumentSink target, String prefix, String extension, long maxBytes, int maxDocuments, Metrics metrics) {
+		this.target = target;
+		this.prefix = prefix;
+		this.extension = extension;
+		// the shard is kept in a byte array
+		this.maxBytes = Math.min(maxBytes, Integer.MAX_VALUE - 8 - 2 * BLOCK_SIZE);
+		this.maxDocuments = maxDocuments;
+		this.mtime = System.currentTimeMillis() / 1000;
+		
+		this.shardCounter = metrics.counter("export_shards_total", "Written shards");
+		this.shardSize = metrics.histogram("export_shard_bytes", "Shard size in bytes", 16, 32);
+		this.shardDocuments = metrics.histogram("export_shard_documents", "Number of documents in a shard", 0, 24);
+	}
+	
+	@Override
+	public synchronized void write(List<String> names, byte[] data, int offset, int length) throws IOException {
+		if (documents > 0 && size + getEntrySize(names, length) > maxBytes)
+			roll();
+		
+		String canonical = names.get(0) + extension;
+		writeHeader(canonical, TYPE_FILE, length, null);
+		int dataOffset = size;
+		ensureCapacity(size + length + BLOCK_SIZE);
+		System.arraycopy(data, offset, shard, size, length);
+		// the shard array is reused, so the padding may hold data of the previous shard
+		Arrays.fill(shard, size + length, pad(size + length), (byte) 0);
+		size = pad(size + length);
+		addIndex(canonical, dataOffset, length);
+		
+		for (int i = 1; i < names.size(); ++i) {
+			String alias = names.get(i) + extension;
+			writeHeader(alias, TYPE_LINK, 0, canonical);
+			addIndex(alias, dataOffset, length);
+		}
+		
+		if (++documents >= maxDocuments && maxDocuments > 0)
+			roll();
+	}
+	
+	/**
+	 * The current shard is rolled over, so all written documents are passed to the target sink
+	 */
+	@Override
+	public void flush() throws IOException {
+		synchronized (this) {
+			roll();
+		}
+		target.flush();
+	}
+	
+	/**
+	 * Function to return number of documents in the current shard and documents, queued by the target sink
+	 */
+	@Override
+	public synchronized int getQueueSize() {
+		return documents + target.getQueueSize();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		try {
+			synchronized (this) {
+				roll();
+			}
+		} finally {
+			target.close();
+		}
+	}
+	
+	/**
+	 * Function to finish the current shard and pass it with it's index to the target sink
+	 * @throws IOException
+	 */
+	private void roll() throws IOException {
+		if (documents == 0)
+			return;
+		
+		// the archive ends with two empty blocks
+		ensureCapacity(size + 2 * BLOCK_SIZE);
+		Arrays.fill(shard, size, size + 2 * BLOCK_SIZE, (byte) 0);
+		size += 2 * BLOCK_SIZE;
+		
+		String name = String.format("%s-%06d", prefix, ++sequence);
+		target.write(Collections.singletonList(name + SHARD_EXTENSION), shard, 0, size);
+		
+		byte[] indexData = index.toString().getBytes(StandardCharsets.UTF_8);
+		target.write(Collections.singletonList(name + INDEX_EXTENSION), indexData, 0, indexData.length);
+		
+		shardCounter.increment();
+		shardSize.record(size);
+		shardDocuments.record(documents);
+		
+		index.setLength(0);
+		size = documents = 0;
+	}
+	
+	private void addIndex(String name, int offset, int length) {
+		index.append(name).append('\t').append(offset).append('\t').append(length).append('\n');
+	}
+	
+	/**
+	 * Function to estimate size of the document entries in the shard, including the end of the archive
+	 * @param names Document names
+	 * @param length Document length
+	 * @return long
+	 */
+	private long getEntrySize(List<String> names, int length) {
+		long entrySize = pad(length) + 2 * BLOCK_SIZE;
+		// every name takes a header block, long names take pax header and records too
+		for (String name : names)
+			entrySize += name.length() > NAME_SIZE / 4 ? 2 * BLOCK_SIZE + pad(4 * name.length() + 32) : BLOCK_SIZE;
+		
+		return entrySize;
+	}
+	
+	/**
+	 * Function to write ustar header of an entry. Names, which do not fit into the header,
+	 * are written into pax extended header before it
+	 * @param name Entry name
+	 * @param type Entry type
+	 * @param length Entry data length
+	 * @param link Link target or null
+	 */
+	private void writeHeader(String name, byte type, int length, String link) {
+		byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		byte[] linkBytes = null == link ? null : link.getBytes(StandardCharsets.UTF_8);
+		
+		if (nameBytes.length > NAME_SIZE || (null != linkBytes && linkBytes.length > NAME_SIZE)) {
+			StringBuilder pax = new StringBuilder();
+			if (nameBytes.length > NAME_SIZE)
+				addPaxRecord(pax, PAX_PATH, name);
+			if (null != linkBytes && linkBytes.length > NAME_SIZE)
+				addPaxRecord(pax, PAX_LINK_PATH, link);
+			
+			byte[] paxBytes = pax.toString().getBytes(StandardCharsets.UTF_8);
+			writeBlock(Arrays.copyOf(nameBytes, NAME_SIZE), TYPE_PAX, paxBytes.length, null);
+			ensureCapacity(size + paxBytes.length + BLOCK_SIZE);
+			System.arraycopy(paxBytes, 0, shard, size, paxBytes.length);
+			Arrays.fill(shard, size + paxBytes.length, pad(size + paxBytes.length), (byte) 0);
+			size = pad(size + paxBytes.length);
+		}
+		
+		writeBlock(nameBytes, type, length, linkBytes);
+	}
+	
+	private void writeBlock(byte[] name, byte type, long length, byte[] link) {
+		ensureCapacity(size + BLOCK_SIZE);
+		Arrays.fill(shard, size, size + BLOCK_SIZE, (byte) 0);
+		
+		putBytes(name, 0, NAME_SIZE);
+		putOctal(0644, 100, 8);
+		putOctal(0, 108, 8);
+		putOctal(0, 116, 8);
+		putOctal(length, 124, 12);
+		putOctal(mtime, 136, 12);
+		shard[size + 156] = type;
+		if (null != link)
+			putBytes(link, 157, NAME_SIZE);
+		putBytes("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 257, 8);
+		
+		// the checksum is calculated with the checksum field filled with spaces
+		Arrays.fill(shard, size + 148, size + 156, (byte) ' ');
+		long checksum = 0;
+		for (int i = 0; i < BLOCK_SIZE; ++i)
+			checksum += shard[size + i] & 0xFF;
+		putOctal(checksum, 148, 7);
+		
+		size += BLOCK_SIZE;
+	}
+	
+	private void putBytes(byte[] bytes, int offset, int max) {
+		System.arraycopy(bytes, 0, shard, size + offset, Math.min(bytes.length, max));
+	}
+	
+	/**
+	 * Function to write zero padded octal number, followed by NUL, into the header field
+	 */
+	private void putOctal(long value, int offset, int length) {
+		String octal = Long.toOctalString(value);
+		int digits = length - 1;
+		for (int i = 0; i < digits; ++i) {
+			int j = octal.length() - digits + i;
+			shard[size + offset + i] = (byte) (j < 0 ? '0' : octal.charAt(j));
+		}
+		shard[size + offset + digits] = 0;
+	}
+	
+	/**
+	 * Function to add pax record: "length key=value\n", where the length includes itself
+	 */
+	private static void addPaxRecord(StringBuilder pax, String key, String value) {
+		int recordSize = key.getBytes(StandardCharsets.UTF_8).length
+				+ value.getBytes(StandardCharsets.UTF_8).length + 3;
+		int length = recordSize + Integer.toString(recordSize).length();
+		if (Integer.toString(length).length() > Integer.toString(recordSize).length())
+			++length;
+		
+		pax.append(length).append(' ').append(key).append('=').append(value).append('\n');
+	}
+	
+	private static int pad(int position) {
+		return (position + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+	}
+	
+	private void ensureCapacity(int capacity) {
+		if (shard.length < capacity)
+			shard = Arrays.copyOf(shard, Math.max(capacity, (int) Math.min(shard.length * 2L, Integer.MAX_VALUE - 8)));
+	}
+}
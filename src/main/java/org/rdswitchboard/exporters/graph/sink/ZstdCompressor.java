@@ -0,0 +1,33 @@
+package org.rdswitchboard.exporters.graph.sink;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+
+/**
+ * Zstandard compressor
+ * 
+ * Compresses every document into a single frame with the content size and checksum,
+ * reusing one native compression context for all documents.
+ * 
+ * @version 1.0.0
+ */
+
+class ZstdCompressor extends Compressor {
+	private final ZstdCompressCtx context = new ZstdCompressCtx();
+	
+	public ZstdCompressor(int level) {
+		context.setLevel(level > 0 ? level : Zstd.defaultCompressionLevel());
+		context.setChecksum(true);
+	}
+	
+	@Override
+	public void compress(byte[] data, int offset, int length) {
+		ensureCapacity(Zstd.compressBound(length));
+		size = context.compressByteArray(buffer, 0, buffer.length, data, offset, length);
+	}
+	
+	@Override
+	public void close() {
+		context.close();
+	}
+}
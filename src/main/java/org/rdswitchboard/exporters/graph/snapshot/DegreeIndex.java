@@ -0,0 +1,157 @@
+package org.rdswitchboard.exporters.graph.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.rdswitchboard.exporters.graph.Neo4jException;
+
+/**
+ * Read only, memory mapped index of node degrees
+ *
+ * Neo4j counts relationships of a sparse node by reading the whole relationship chain,
+ * the index returns the number of node relationships with a single read. The file
+ * starts with the header, followed by an int per Neo4j node ID:
+ *
+ *   int version, long nodes, long created, int degree * nodes
+ *
+ * The index is much smaller than the {@link Snapshot}, which already knows the degree
+ * of every node, so the index is only useful without the snapshot. Like the snapshot,
+ * the index is not updated with the graph and must be created again after the graph
+ * has been changed.
+ *
+ * @version 1.0.0
+ */
+
+public class DegreeIndex implements Closeable {
+	static final int VERSION = 1;
+	
+	private static final int HEADER_SIZE = Integer.BYTES + 2 * Long.BYTES;
+	private static final long PROGRESS_INTERVAL = 1000000;
+	private static final int BUFFER_SIZE = 1024 * 1024;
+	
+	private final long nodes;
+	private final long created;
+	private final Snapshot.MappedArray degrees;
+	
+	private DegreeIndex(File file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+			int version = in.readInt();
+			if (version != VERSION)
+				throw new IOException("Unsupported degree index version: " + version);
+			
+			nodes = in.readLong();
+			created = in.readLong();
+		}
+		
+		degrees = new Snapshot.MappedArray(file, HEADER_SIZE + nodes * Integer.BYTES);
+	}
+	
+	/**
+	 * Function to open the index
+	 * @param file Index file
+	 * @return DegreeIndex
+	 * @throws IOException
+	 */
+	public static DegreeIndex open(File file) throws IOException {
+		if (!file.exists())
+			throw new IOException("The degree index " + file + " does not exist");
+		
+		return new DegreeIndex(file);
+	}
+	
+	/**
+	 * Function to write the index of all graph nodes. The previous index will be replaced
+	 * @param graphDb Graph database
+	 * @param file Index file
+	 * @throws Neo4jException
+	 * @throws IOException
+	 */
+	public static void write(GraphDatabaseService graphDb, File file) throws Neo4jException, IOException {
+		File tempFile = new File(file.getPath() + ".tmp");
+		long start = System.currentTimeMillis();
+		long nodes = 0;
+		
+		// node count is not known before all nodes have been read, the header is written last
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(tempFile), BUFFER_SIZE));
+				Transaction tx = graphDb.beginTx()) {
+			out.write(new byte[HEADER_SIZE]);
+			
+			for (Node node : graphDb.getAllNodes()) {
+				long id = node.getId();
+				if (id < nodes)
+					throw new Neo4jException("Nodes are not returned in ID order, node " + id + " follows node " + (nodes - 1));
+				
+				// deleted nodes have no relationships
+				for (; nodes < id; ++nodes)
+					out.writeInt(0);
+				
+				out.writeInt(node.getDegree());
+				
+				if (++nodes % PROGRESS_INTERVAL == 0)
+					System.out.println("Written degrees of " + nodes + " node ID's");
+			}
+			
+			tx.success();
+		}
+		
+		try (RandomAccessFile raf = new RandomAccessFile(tempFile, "rw")) {
+			raf.writeInt(VERSION);
+			raf.writeLong(nodes);
+			raf.writeLong(start);
+		}
+		
+		Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		
+		System.out.println("Written degree index of " + nodes + " node ID's in "
+				+ (System.currentTimeMillis() - start) + " ms");
+	}
+	
+	/**
+	 * Function to return number of node ID's in the index
+	 * @return long
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+	
+	/**
+	 * Function to return the index creation time
+	 * @return time in milliseconds
+	 */
+	public long getCreated() {
+		return created;
+	}
+	
+	/**
+	 * Function to return number of node relationships
+	 * @param nodeId Node ID
+	 * @return Node degree, -1 if the node is not in the index
+	 */
+	public int getDegree(long nodeId) {
+		if (nodeId < 0 || nodeId >= nodes)
+			return -1;
+		
+		return degrees.getInt(HEADER_SIZE + nodeId * Integer.BYTES);
+	}
+	
+	/**
+	 * Function to release the mapped file. The mapped memory will be released by garbage collector
+	 */
+	@Override
+	public void close() {
+		degrees.close();
+	}
+}
@@ -0,0 +1,301 @@
+package org.rdswitchboard.exporters.graph.snapshot;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.rdswitchboard.exporters.graph.collections.LongList;
+
+/**
+ * Read only, memory mapped snapshot of the graph structure
+ * 
+ * The snapshot keeps only what the traversal needs: node type and labels, and node 
+ * relationships in compressed sparse row format. Arrays are indexed by Neo4j node ID:
+ * 
+ *   offsets.bin                - long per node and one more, node relationships are
+ *                                stored from offsets[id] to offsets[id + 1]
+ *   nodes.bin                  - long per node, type index + 1 in high 32 bits 
+ *                                (0 if node has no type) and bit mask of labels in low 32 bits
+ *   relationships.bin          - two longs per node relationship: relationship ID and 
+ *                                the other node ID
+ *   relationship-types.bin     - int per node relationship: relationship type index, 
+ *                                the highest bit is set if the node is the start node
+ *   snapshot.properties        - counts and the names of types and labels
+ * 
+ * Relationships of every node are stored in the same order, as Neo4j returns them.
+ * Files are mapped into memory, the operating system page cache holds the data, so 
+ * the snapshot of any size can be opened instantly and shared by all export workers.
+ * Node properties are not stored in the snapshot.
+ * 
+ * The snapshot is not updated with the graph, it must be created again after the 
+ * graph has been changed. Use {@link SnapshotWriter} to create the snapshot.
+ * 
+ * @version 1.0.0
+ */
+
+public class Snapshot implements Closeable {
+	static final int VERSION = 1;
+	
+	static final String FILE_PROPERTIES = "snapshot.properties";
+	static final String FILE_OFFSETS = "offsets.bin";
+	static final String FILE_NODES = "nodes.bin";
+	static final String FILE_RELATIONSHIPS = "relationships.bin";
+	static final String FILE_RELATIONSHIP_TYPES = "relationship-types.bin";
+	
+	static final String PROPERTY_VERSION = "version";
+	static final String PROPERTY_NODES = "nodes";
+	static final String PROPERTY_RELATIONSHIPS = "relationships";
+	static final String PROPERTY_CREATED = "created";
+	static final String PROPERTY_NODE_TYPE = "node.type.";
+	static final String PROPERTY_LABEL = "label.";
+	static final String PROPERTY_RELATIONSHIP_TYPE = "relationship.type.";
+	
+	static final int OUTGOING = 0x80000000;
+	
+	private final long nodes;
+	private final long relationships;
+	private final long created;
+	private final String[] nodeTypes;
+	private final String[] relationshipTypes;
+	private final Map<String, Integer> labels;
+	
+	private final MappedArray offsets;
+	private final MappedArray nodeData;
+	private final MappedArray relationshipData;
+	private final MappedArray relationshipTypeData;
+	
+	private Snapshot(File folder) throws IOException {
+		Properties properties = new Properties();
+		try (InputStream in = new FileInputStream(new File(folder, FILE_PROPERTIES))) {
+			properties.load(in);
+		}
+		
+		int version = Integer.parseInt(properties.getProperty(PROPERTY_VERSION, "0"));
+		if (version != VERSION)
+			throw new IOException("Unsupported snapshot version: " + version);
+		
+		nodes = Long.parseLong(properties.getProperty(PROPERTY_NODES));
+		relationships = Long.parseLong(properties.getProperty(PROPERTY_RELATIONSHIPS));
+		created = Long.parseLong(properties.getProperty(PROPERTY_CREATED, "0"));
+		nodeTypes = loadNames(properties, PROPERTY_NODE_TYPE).toArray(new String[0]);
+		relationshipTypes = loadNames(properties, PROPERTY_RELATIONSHIP_TYPE).toArray(new String[0]);
+		
+		labels = new HashMap<String, Integer>();
+		for (String label : loadNames(properties, PROPERTY_LABEL))
+			labels.put(label, 1 << labels.size());
+		
+		offsets = new MappedArray(new File(folder, FILE_OFFSETS), (nodes + 1) * Long.BYTES);
+		nodeData = new MappedArray(new File(folder, FILE_NODES), nodes * Long.BYTES);
+		relationshipData = new MappedArray(new File(folder, FILE_RELATIONSHIPS), relationships * 2 * Long.BYTES);
+		relationshipTypeData = new MappedArray(new File(folder, FILE_RELATIONSHIP_TYPES), relationships * Integer.BYTES);
+	}
+	
+	/**
+	 * Function to open the snapshot
+	 * @param folder Snapshot folder
+	 * @return Snapshot
+	 * @throws IOException
+	 */
+	public static Snapshot open(File folder) throws IOException {
+		if (!new File(folder, FILE_PROPERTIES).exists())
+			throw new IOException("The " + folder + " folder does not contain graph snapshot");
+		
+		return new Snapshot(folder);
+	}
+	
+	/**
+	 * Function to return the number of node ID's in the snapshot, the highest node ID + 1
+	 * @return long
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+	
+	/**
+	 * Function to return the total number of node relationships. Every relationship is 
+	 * stored for both nodes
+	 * @return long
+	 */
+	public long getRelationships() {
+		return relationships;
+	}
+	
+	/**
+	 * Function to return snapshot creation time
+	 * @return milliseconds since epoch
+	 */
+	public long getCreated() {
+		return created;
+	}
+	
+	/**
+	 * Function to return node type
+	 * @param nodeId Node ID
+	 * @return type or null if node has no type or does not exist
+	 */
+	public String getNodeType(long nodeId) {
+		if (nodeId < 0 || nodeId >= nodes)
+			return null;
+		
+		int type = (int) (nodeData.getLong(nodeId * Long.BYTES) >>> 32);
+		return type > 0 ? nodeTypes[type - 1] : null;
+	}
+	
+	/**
+	 * Function to test if node has a label
+	 * @param nodeId Node ID
+	 * @param label Label name
+	 * @return true if node has the label
+	 */
+	public boolean hasLabel(long nodeId, String label) {
+		Integer mask = labels.get(label);
+		if (null == mask || nodeId < 0 || nodeId >= nodes)
+			return false;
+		
+		return ((int) nodeData.getLong(nodeId * Long.BYTES) & mask) != 0;
+	}
+	
+	/**
+	 * Function to find all nodes having the label
+	 * @param label Label name
+	 * @return array of node ID's in ID order
+	 */
+	public long[] findNodes(String label) {
+		Integer mask = labels.get(label);
+		if (null == mask)
+			return new long[0];
+		
+		LongList ids = new LongList();
+		for (long id = 0; id < nodes; ++id)
+			if (((int) nodeData.getLong(id * Long.BYTES) & mask) != 0)
+				ids.add(id);
+		
+		long[] result = new long[ids.size()];
+		for (int i = 0; i < result.length; ++i)
+			result[i] = ids.get(i);
+		
+		return result;
+	}
+	
+	/**
+	 * Function to return index of the first node relationship
+	 * @param nodeId Node ID
+	 * @return long
+	 */
+	public long getFirstRelationship(long nodeId) {
+		return nodeId < 0 || nodeId >= nodes ? 0 : offsets.getLong(nodeId * Long.BYTES);
+	}
+	
+	/**
+	 * Function to return index after the last node relationship
+	 * @param nodeId Node ID
+	 * @return long
+	 */
+	public long getEndRelationship(long nodeId) {
+		return nodeId < 0 || nodeId >= nodes ? 0 : offsets.getLong((nodeId + 1) * Long.BYTES);
+	}
+	
+	/**
+	 * Function to return relationship ID
+	 * @param index Relationship index
+	 * @return long
+	 */
+	public long getRelationshipId(long index) {
+		return relationshipData.getLong(index * 2 * Long.BYTES);
+	}
+	
+	/**
+	 * Function to return the other node of relationship
+	 * @param index Relationship index
+	 * @return Node ID
+	 */
+	public long getOtherNode(long index) {
+		return relationshipData.getLong((index * 2 + 1) * Long.BYTES);
+	}
+	
+	/**
+	 * Function to test if the node, relationship belongs to, is the start node of the relationship
+	 * @param index Relationship index
+	 * @return boolean
+	 */
+	public boolean isOutgoing(long index) {
+		return (relationshipTypeData.getInt(index * Integer.BYTES) & OUTGOING) != 0;
+	}
+	
+	/**
+	 * Function to return relationship type
+	 * @param index Relationship index
+	 * @return String
+	 */
+	public String getRelationshipType(long index) {
+		return relationshipTypes[relationshipTypeData.getInt(index * Integer.BYTES) & ~OUTGOING];
+	}
+	
+	/**
+	 * Function to release mapped files. The mapped memory will be released by garbage collector
+	 */
+	@Override
+	public void close() {
+		offsets.close();
+		nodeData.close();
+		relationshipData.close();
+		relationshipTypeData.close();
+	}
+	
+	private static List<String> loadNames(Properties properties, String prefix) {
+		List<String> names = new ArrayList<String>();
+		String name;
+		while ((name = properties.getProperty(prefix + names.size())) != null)
+			names.add(name);
+		
+		return names;
+	}
+	
+	/**
+	 * Read only file, mapped into memory in chunks of up to 1 GB. 
+	 * Values are aligned, so no value crosses the chunk boundary
+	 */
+	static class MappedArray {
+		private static final int CHUNK_BITS = 30;
+		private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+		
+		private MappedByteBuffer[] chunks;
+		
+		public MappedArray(File file, long size) throws IOException {
+			try (RandomAccessFile raf = new RandomAccessFile(file, "r"); 
+					FileChannel channel = raf.getChannel()) {
+				if (channel.size() != size)
+					throw new IOException("The file " + file + " has unexpected size " 
+							+ channel.size() + ", expected " + size);
+				
+				chunks = new MappedByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_BITS)];
+				for (int i = 0; i < chunks.length; ++i) {
+					long position = (long) i << CHUNK_BITS;
+					chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position, 1L << CHUNK_BITS));
+				}
+			}
+		}
+		
+		public long getLong(long offset) {
+			return chunks[(int) (offset >>> CHUNK_BITS)].getLong((int) (offset & CHUNK_MASK));
+		}
+		
+		public int getInt(long offset) {
+			return chunks[(int) (offset >>> CHUNK_BITS)].getInt((int) (offset & CHUNK_MASK));
+		}
+		
+		public void close() {
+			chunks = null;
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package org.rdswitchboard.exporters.graph.snapshot;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.parboiled.common.StringUtils;
+import org.rdswitchboard.exporters.graph.Exporter;
+
+/**
+ * Main class for graph snapshot and degree index writer
+ * 
+ * Parameters: 
+ * 	 $1 : Configuration file (snapshot.conf)
+ * 
+ * To run, please execute from the main project folder
+ * $ java -cp <program name>.jar org.rdswitchboard.exporters.graph.snapshot.SnapshotApp snapshot.conf
+ * 
+ * @version 1.1.0
+ */
+
+public class SnapshotApp {
+	
+	private static void loadProperties(Properties properties, String propertiesFile) throws IOException {
+		try (InputStream in = new FileInputStream(propertiesFile)) {
+			properties.load(in);
+		}
+	}
+	
+	public static void main(String[] args) {
+		try {
+			String configuration = args.length > 0 ? args[0] : null;
+			if (StringUtils.isEmpty(configuration)) {
+				configuration = "snapshot.conf";
+			}
+			
+			Properties properties = new Properties();
+			loadProperties(properties, configuration);
+			
+			String neo4jFolder = properties.getProperty("neo4j");
+			String snapshotFolder = properties.getProperty("snapshot");
+			String degreeIndexFile = properties.getProperty("degree.index");
+			
+			if (StringUtils.isEmpty(neo4jFolder)) {
+				System.out.println("Neo4j folder can not be empty");
+				
+				System.exit(1);
+			}
+			
+			if (StringUtils.isEmpty(snapshotFolder) && StringUtils.isEmpty(degreeIndexFile)) {
+				System.out.println("Snapshot folder and degree index file can not be both empty");
+				
+				System.exit(1);
+			}
+			
+			GraphDatabaseService graphDb = Exporter.getReadOnlyGraphDb(neo4jFolder);
+			try {
+				if (!StringUtils.isEmpty(snapshotFolder))
+					new SnapshotWriter(new File(snapshotFolder)).write(graphDb);
+				if (!StringUtils.isEmpty(degreeIndexFile))
+					DegreeIndex.write(graphDb, new File(degreeIndexFile));
+			} finally {
+				graphDb.shutdown();
+			}
+			
+		} catch (Exception e) {
+			e.printStackTrace();
+			
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package org.rdswitchboard.exporters.graph.snapshot;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import org.neo4j.graphdb.Direction;
+import org.rdswitchboard.exporters.graph.source.Edge;
+import org.rdswitchboard.exporters.graph.source.GraphSource;
+
+/**
+ * Graph source, reading the graph structure from the snapshot
+ * 
+ * Labels, node types and relationships are read from the memory mapped snapshot, 
+ * node properties are read from another source, usually from Neo4j the snapshot was 
+ * created from.
+ * 
+ * @version 1.1.0
+ */
+
+public class SnapshotSource implements GraphSource {
+	private final Snapshot snapshot;
+	private final GraphSource properties;
+	
+	/**
+	 * Create new source
+	 * @param snapshot Opened snapshot, will be closed with the source
+	 * @param properties Source of node properties, will be closed with the source
+	 */
+	public SnapshotSource(Snapshot snapshot, GraphSource properties) {
+		this.snapshot = snapshot;
+		this.properties = properties;
+	}
+	
+	public Snapshot getSnapshot() {
+		return snapshot;
+	}
+
+	@Override
+	public Session begin() {
+		return properties.begin();
+	}
+
+	@Override
+	public long[] findNodes(String label) {
+		return snapshot.findNodes(label);
+	}
+
+	@Override
+	public boolean hasNode(long nodeId) {
+		return properties.hasNode(nodeId);
+	}
+
+	@Override
+	public boolean hasLabel(long nodeId, String label) {
+		return snapshot.hasLabel(nodeId, label);
+	}
+
+	@Override
+	public String getNodeType(long nodeId) {
+		return snapshot.getNodeType(nodeId);
+	}
+
+	@Override
+	public Object getProperty(long nodeId, String key) {
+		return properties.getProperty(nodeId, key);
+	}
+
+	@Override
+	public Map<String, Object> getProperties(long nodeId) {
+		return properties.getProperties(nodeId);
+	}
+
+	@Override
+	public int getDegree(long nodeId) {
+		return (int) (snapshot.getEndRelationship(nodeId) - snapshot.getFirstRelationship(nodeId));
+	}
+
+	@Override
+	public Iterable<Edge> getEdges(long nodeId) {
+		return () -> new Iterator<Edge>() {
+			private final long end = snapshot.getEndRelationship(nodeId);
+			private long index = snapshot.getFirstRelationship(nodeId);
+			
+			@Override
+			public boolean hasNext() {
+				return index < end;
+			}
+
+			@Override
+			public Edge next() {
+				long other = snapshot.getOtherNode(index);
+				boolean outgoing = snapshot.isOutgoing(index);
+				Edge edge = new Edge(snapshot.getRelationshipId(index), outgoing ? nodeId : other, 
+						outgoing ? other : nodeId, snapshot.getRelationshipType(index));
+				++index;
+				return edge;
+			}
+		};
+	}
+
+	@Override
+	public Iterable<Edge> getEdges(long nodeId, Direction direction, String... types) {
+		return () -> new Iterator<Edge>() {
+			private final long end = snapshot.getEndRelationship(nodeId);
+			private long index = skip(snapshot.getFirstRelationship(nodeId));
+			
+			@Override
+			public boolean hasNext() {
+				return index < end;
+			}
+
+			@Override
+			public Edge next() {
+				long other = snapshot.getOtherNode(index);
+				boolean outgoing = snapshot.isOutgoing(index);
+				Edge edge = new Edge(snapshot.getRelationshipId(index), outgoing ? nodeId : other, 
+						outgoing ? other : nodeId, snapshot.getRelationshipType(index));
+				index = skip(index + 1);
+				return edge;
+			}
+			
+			private long skip(long index) {
+				for (; index < end; ++index) {
+					boolean outgoing = snapshot.isOutgoing(index);
+					// loops are stored once, as outgoing, but match both directions
+					if ((direction == Direction.OUTGOING && !outgoing) 
+							|| (direction == Direction.INCOMING && outgoing && snapshot.getOtherNode(index) != nodeId))
+						continue;
+					if (types.length == 0 || hasType(snapshot.getRelationshipType(index), types))
+						break;
+				}
+				return index;
+			}
+		};
+	}
+	
+	private static boolean hasType(String type, String[] types) {
+		for (String t : types)
+			if (t.equals(type))
+				return true;
+		
+		return false;
+	}
+
+	@Override
+	public boolean isStructureInMemory() {
+		return true;
+	}
+
+	@Override
+	public void close() {
+		snapshot.close();
+		properties.close();
+	}
+}
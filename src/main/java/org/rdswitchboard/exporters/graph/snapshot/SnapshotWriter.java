@@ -0,0 +1,164 @@
+package org.rdswitchboard.exporters.graph.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.rdswitchboard.exporters.graph.Neo4jException;
+
+/**
+ * Writer of the graph snapshot
+ * 
+ * Reads all nodes and relationships in a single pass and streams them into snapshot 
+ * files, see {@link Snapshot} for the format. Nodes are read in ID order, so the writer
+ * keeps only the names of types and labels in memory. The properties file is written
+ * last, so an interrupted snapshot can not be opened.
+ * 
+ * @version 1.0.0
+ */
+
+public class SnapshotWriter {
+	private static final String PROPERTY_TYPE = "type";
+	private static final int MAX_LABELS = 32;
+	private static final long PROGRESS_INTERVAL = 1000000;
+	private static final int BUFFER_SIZE = 1024 * 1024;
+	
+	private final File folder;
+	
+	private final Map<String, Integer> nodeTypes = new HashMap<String, Integer>();
+	private final Map<String, Integer> labels = new HashMap<String, Integer>();
+	private final Map<String, Integer> relationshipTypes = new HashMap<String, Integer>();
+	
+	/**
+	 * Create new writer
+	 * @param folder Snapshot folder, will be created if it does not exist
+	 */
+	public SnapshotWriter(File folder) {
+		this.folder = folder;
+	}
+	
+	/**
+	 * Function to write the snapshot of the graph. The previous snapshot in the folder will be replaced
+	 * @param graphDb Graph database
+	 * @throws Neo4jException
+	 * @throws IOException
+	 */
+	public void write(GraphDatabaseService graphDb) throws Neo4jException, IOException {
+		if (!folder.exists() && !folder.mkdirs())
+			throw new IOException("Unable to create snapshot folder: " + folder);
+		
+		// the old snapshot can not be opened, while the new one is written
+		File propertiesFile = new File(folder, Snapshot.FILE_PROPERTIES);
+		Files.deleteIfExists(propertiesFile.toPath());
+		
+		long start = System.currentTimeMillis();
+		long nodes = 0;
+		long relationships = 0;
+		
+		try (DataOutputStream offsets = open(Snapshot.FILE_OFFSETS);
+				DataOutputStream nodeData = open(Snapshot.FILE_NODES);
+				DataOutputStream relationshipData = open(Snapshot.FILE_RELATIONSHIPS);
+				DataOutputStream relationshipTypeData = open(Snapshot.FILE_RELATIONSHIP_TYPES);
+				Transaction tx = graphDb.beginTx()) {
+			long count = 0;
+			for (Node node : graphDb.getAllNodes()) {
+				long id = node.getId();
+				if (id < nodes)
+					throw new Neo4jException("Nodes are not returned in ID order, node " + id + " follows node " + (nodes - 1));
+				
+				// deleted nodes have no relationships
+				for (; nodes < id; ++nodes) {
+					offsets.writeLong(relationships);
+					nodeData.writeLong(0);
+				}
+				
+				offsets.writeLong(relationships);
+				nodeData.writeLong(((long) getNodeType(node) << 32) | (getLabels(node) & 0xFFFFFFFFL));
+				++nodes;
+				
+				for (Relationship relationship : node.getRelationships()) {
+					boolean outgoing = relationship.getStartNode().getId() == id;
+					
+					relationshipData.writeLong(relationship.getId());
+					relationshipData.writeLong(outgoing ? relationship.getEndNode().getId() : relationship.getStartNode().getId());
+					relationshipTypeData.writeInt(getIndex(relationshipTypes, relationship.getType().name()) 
+							| (outgoing ? Snapshot.OUTGOING : 0));
+					++relationships;
+				}
+				
+				if (++count % PROGRESS_INTERVAL == 0)
+					System.out.println("Written " + count + " nodes and " + relationships + " node relationships");
+			}
+			
+			offsets.writeLong(relationships);
+			
+			tx.success();
+		}
+		
+		Properties properties = new Properties();
+		properties.setProperty(Snapshot.PROPERTY_VERSION, Integer.toString(Snapshot.VERSION));
+		properties.setProperty(Snapshot.PROPERTY_NODES, Long.toString(nodes));
+		properties.setProperty(Snapshot.PROPERTY_RELATIONSHIPS, Long.toString(relationships));
+		properties.setProperty(Snapshot.PROPERTY_CREATED, Long.toString(start));
+		storeNames(properties, Snapshot.PROPERTY_NODE_TYPE, nodeTypes);
+		storeNames(properties, Snapshot.PROPERTY_LABEL, labels);
+		storeNames(properties, Snapshot.PROPERTY_RELATIONSHIP_TYPE, relationshipTypes);
+		
+		File tempFile = new File(folder, Snapshot.FILE_PROPERTIES + ".tmp");
+		try (OutputStream out = new FileOutputStream(tempFile)) {
+			properties.store(out, "Graph snapshot");
+		}
+		Files.move(tempFile.toPath(), propertiesFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		
+		System.out.println("Written snapshot of " + nodes + " node ID's and " + relationships 
+				+ " node relationships in " + (System.currentTimeMillis() - start) + " ms");
+	}
+	
+	private DataOutputStream open(String file) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(folder, file)), BUFFER_SIZE));
+	}
+	
+	private int getNodeType(Node node) {
+		Object type = node.getProperty(PROPERTY_TYPE, null);
+		return type instanceof String ? getIndex(nodeTypes, (String) type) + 1 : 0;
+	}
+	
+	private int getLabels(Node node) throws Neo4jException {
+		int mask = 0;
+		for (Label label : node.getLabels()) {
+			int index = getIndex(labels, label.name());
+			if (index >= MAX_LABELS)
+				throw new Neo4jException("The graph has more than " + MAX_LABELS + " labels, which is not supported by snapshot");
+			
+			mask |= 1 << index;
+		}
+		
+		return mask;
+	}
+	
+	private static int getIndex(Map<String, Integer> names, String name) {
+		Integer index = names.get(name);
+		if (null == index) 
+			names.put(name, index = names.size());
+		
+		return index;
+	}
+	
+	private static void storeNames(Properties properties, String prefix, Map<String, Integer> names) {
+		for (Map.Entry<String, Integer> entry : names.entrySet())
+			properties.setProperty(prefix + entry.getValue(), entry.getKey());
+	}
+}
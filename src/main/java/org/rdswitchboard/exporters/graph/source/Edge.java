@@ -0,0 +1,54 @@
+package org.rdswitchboard.exporters.graph.source;
+
+/**
+ * Immutable relationship, as it is needed for the export
+ * 
+ * Edges do not hold any source objects, so they can be cached and shared between 
+ * export workers.
+ * 
+ * @version 1.2.0
+ */
+
+public final class Edge {
+	/**
+	 * Estimated size of a single edge in bytes, including the array reference
+	 */
+	public static final int SIZE = 56;
+	
+	private final long id;
+	private final long start;
+	private final long end;
+	private final String type;
+	
+	public Edge(long id, long start, long end, String type) {
+		this.id = id;
+		this.start = start;
+		this.end = end;
+		this.type = type;
+	}
+	
+	public long getId() {
+		return id;
+	}
+	
+	public long getStart() {
+		return start;
+	}
+	
+	public long getEnd() {
+		return end;
+	}
+	
+	public String getType() {
+		return type;
+	}
+	
+	/**
+	 * Function to return the other node of the relationship
+	 * @param nodeId One of the relationship nodes
+	 * @return ID of the other node
+	 */
+	public long getOther(long nodeId) {
+		return start == nodeId ? end : start;
+	}
+}
@@ -0,0 +1,120 @@
+package org.rdswitchboard.exporters.graph.source;
+
+import java.io.Closeable;
+import java.util.Map;
+
+import org.neo4j.graphdb.Direction;
+
+/**
+ * Source of the exported graph
+ * 
+ * The exporter reads the graph only through this interface, so the graph can be stored
+ * in embedded Neo4j, in a snapshot or in memory. Nodes and relationships are identified 
+ * by their ID's, no objects are created to represent them, except edges, returned while 
+ * iterating node relationships.
+ * 
+ * A source can be read from many threads at once. Every thread must read inside it's own 
+ * {@link GraphSource.Session}, which is used to hold the read transaction of sources 
+ * requiring one.
+ * 
+ * @version 1.1.0
+ */
+
+public interface GraphSource extends Closeable {
+	/**
+	 * Function to begin reading from the current thread
+	 * @return Session, which must be closed by the same thread
+	 */
+	Session begin();
+	
+	/**
+	 * Function to find all nodes having the label
+	 * @param label Label name
+	 * @return array of node ID's in any order
+	 */
+	long[] findNodes(String label);
+	
+	/**
+	 * Function to test if node exists
+	 * @param nodeId Node ID
+	 * @return boolean
+	 */
+	boolean hasNode(long nodeId);
+	
+	/**
+	 * Function to test if node has the label
+	 * @param nodeId Node ID
+	 * @param label Label name
+	 * @return boolean
+	 */
+	boolean hasLabel(long nodeId, String label);
+	
+	/**
+	 * Function to return node type, stored in the type property
+	 * @param nodeId Node ID
+	 * @return type or null if node has no type
+	 */
+	String getNodeType(long nodeId);
+	
+	/**
+	 * Function to return a single node property
+	 * @param nodeId Node ID
+	 * @param key Property name
+	 * @return value or null if node has no such property
+	 */
+	Object getProperty(long nodeId, String key);
+	
+	/**
+	 * Function to return all node properties
+	 * @param nodeId Node ID
+	 * @return Map of properties, must not be modified
+	 */
+	Map<String, Object> getProperties(long nodeId);
+	
+	/**
+	 * Function to return the number of node relationships
+	 * @param nodeId Node ID
+	 * @return int
+	 */
+	int getDegree(long nodeId);
+	
+	/**
+	 * Function to iterate node relationships. The same node relationships are always 
+	 * returned in the same order
+	 * @param nodeId Node ID
+	 * @return Iterable of edges, the node is the start or the end of every edge
+	 */
+	Iterable<Edge> getEdges(long nodeId);
+	
+	/**
+	 * Function to iterate node relationships of the given direction and types. Loops
+	 * are both outgoing and incoming. Relationships are returned in the same order
+	 * as {@link #getEdges(long)} returns them
+	 * @param nodeId Node ID
+	 * @param direction OUTGOING, INCOMING or BOTH
+	 * @param types Relationship type names, relationships of all types are returned if none is given
+	 * @return Iterable of edges
+	 */
+	Iterable<Edge> getEdges(long nodeId, Direction direction, String... types);
+	
+	/**
+	 * Function to test if node types and relationships are held in memory, 
+	 * so caching them will not speed up the export
+	 * @return boolean
+	 */
+	boolean isStructureInMemory();
+	
+	/**
+	 * Function to close the source and release all resources
+	 */
+	@Override
+	void close();
+	
+	/**
+	 * Read session of a single thread
+	 */
+	interface Session extends AutoCloseable {
+		@Override
+		void close();
+	}
+}
@@ -0,0 +1,298 @@
+package org.rdswitchboard.exporters.graph.source;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.neo4j.graphdb.Direction;
+import org.rdswitchboard.exporters.graph.collections.LongList;
+
+/**
+ * Graph source, holding the whole graph in memory
+ * 
+ * Node ID's are sequential, starting from 0. Relationships are stored in compressed 
+ * sparse row format in primitive arrays, node properties are kept in maps. Every node can
+ * have up to 32 different labels. The source is immutable and is created with 
+ * {@link MemorySource.Builder}. 
+ * 
+ * The source is intended for tests and benchmarks, which do not need a Neo4j store.
+ * 
+ * @version 1.1.0
+ */
+
+public class MemorySource implements GraphSource {
+	private static final String PROPERTY_TYPE = "type";
+	private static final int OUTGOING = 0x80000000;
+	private static final Session SESSION = () -> {};
+	
+	private final int nodes;
+	private final int[] nodeLabels;
+	private final String[] nodeTypes;
+	private final Map<String, Object>[] properties;
+	private final Map<String, Integer> labels;
+	
+	private final int[] offsets;
+	private final long[] relationshipIds;
+	private final long[] otherNodes;
+	private final int[] relationshipTypes;
+	private final String[] relationshipTypeNames;
+	
+	private MemorySource(Builder builder) {
+		nodes = builder.properties.size();
+		labels = new HashMap<String, Integer>(builder.labels);
+		relationshipTypeNames = new String[builder.relationshipTypes.size()];
+		for (Map.Entry<String, Integer> entry : builder.relationshipTypes.entrySet())
+			relationshipTypeNames[entry.getValue()] = entry.getKey();
+		
+		@SuppressWarnings("unchecked")
+		Map<String, Object>[] properties = new Map[nodes];
+		nodeTypes = new String[nodes];
+		nodeLabels = new int[nodes];
+		for (int i = 0; i < nodes; ++i) {
+			nodeLabels[i] = (int) builder.nodeLabels.get(i);
+			properties[i] = Collections.unmodifiableMap(builder.properties.get(i));
+			Object type = properties[i].get(PROPERTY_TYPE);
+			nodeTypes[i] = type instanceof String ? (String) type : null;
+		}
+		this.properties = properties;
+		
+		// count node relationships, every relationship is stored for both nodes, loops only once
+		int relationships = builder.starts.size();
+		offsets = new int[nodes + 1];
+		for (int i = 0; i < relationships; ++i) {
+			++offsets[(int) builder.starts.get(i) + 1];
+			if (builder.ends.get(i) != builder.starts.get(i))
+				++offsets[(int) builder.ends.get(i) + 1];
+		}
+		for (int i = 0; i < nodes; ++i)
+			offsets[i + 1] += offsets[i];
+		
+		relationshipIds = new long[offsets[nodes]];
+		otherNodes = new long[offsets[nodes]];
+		relationshipTypes = new int[offsets[nodes]];
+		
+		int[] next = new int[nodes];
+		System.arraycopy(offsets, 0, next, 0, nodes);
+		for (int i = 0; i < relationships; ++i) {
+			int start = (int) builder.starts.get(i);
+			int end = (int) builder.ends.get(i);
+			int type = (int) builder.types.get(i);
+			
+			int index = next[start]++;
+			relationshipIds[index] = i;
+			otherNodes[index] = end;
+			relationshipTypes[index] = type | OUTGOING;
+			
+			if (end != start) {
+				index = next[end]++;
+				relationshipIds[index] = i;
+				otherNodes[index] = start;
+				relationshipTypes[index] = type;
+			}
+		}
+	}
+	
+	@Override
+	public Session begin() {
+		return SESSION;
+	}
+
+	@Override
+	public long[] findNodes(String label) {
+		Integer mask = labels.get(label);
+		if (null == mask)
+			return new long[0];
+		
+		LongList ids = new LongList();
+		for (int i = 0; i < nodes; ++i)
+			if ((nodeLabels[i] & mask) != 0)
+				ids.add(i);
+		
+		long[] result = new long[ids.size()];
+		for (int i = 0; i < result.length; ++i)
+			result[i] = ids.get(i);
+		
+		return result;
+	}
+
+	@Override
+	public boolean hasNode(long nodeId) {
+		return nodeId >= 0 && nodeId < nodes;
+	}
+
+	@Override
+	public boolean hasLabel(long nodeId, String label) {
+		Integer mask = labels.get(label);
+		return null != mask && (nodeLabels[(int) nodeId] & mask) != 0;
+	}
+
+	@Override
+	public String getNodeType(long nodeId) {
+		return nodeTypes[(int) nodeId];
+	}
+
+	@Override
+	public Object getProperty(long nodeId, String key) {
+		return properties[(int) nodeId].get(key);
+	}
+
+	@Override
+	public Map<String, Object> getProperties(long nodeId) {
+		return properties[(int) nodeId];
+	}
+
+	@Override
+	public int getDegree(long nodeId) {
+		return offsets[(int) nodeId + 1] - offsets[(int) nodeId];
+	}
+
+	@Override
+	public Iterable<Edge> getEdges(long nodeId) {
+		return () -> new Iterator<Edge>() {
+			private final int end = offsets[(int) nodeId + 1];
+			private int index = offsets[(int) nodeId];
+			
+			@Override
+			public boolean hasNext() {
+				return index < end;
+			}
+
+			@Override
+			public Edge next() {
+				long other = otherNodes[index];
+				int type = relationshipTypes[index];
+				boolean outgoing = (type & OUTGOING) != 0;
+				Edge edge = new Edge(relationshipIds[index], outgoing ? nodeId : other, outgoing ? other : nodeId, 
+						relationshipTypeNames[type & ~OUTGOING]);
+				++index;
+				return edge;
+			}
+		};
+	}
+
+	@Override
+	public Iterable<Edge> getEdges(long nodeId, Direction direction, String... types) {
+		// resolve type names once, unknown types do not match any relationship
+		boolean[] typeFilter = null;
+		if (types.length > 0) {
+			typeFilter = new boolean[relationshipTypeNames.length];
+			for (String type : types)
+				for (int i = 0; i < relationshipTypeNames.length; ++i)
+					if (relationshipTypeNames[i].equals(type))
+						typeFilter[i] = true;
+		}
+		boolean[] filter = typeFilter;
+		
+		return () -> new Iterator<Edge>() {
+			private final int end = offsets[(int) nodeId + 1];
+			private int index = skip(offsets[(int) nodeId]);
+			
+			@Override
+			public boolean hasNext() {
+				return index < end;
+			}
+
+			@Override
+			public Edge next() {
+				long other = otherNodes[index];
+				int type = relationshipTypes[index];
+				boolean outgoing = (type & OUTGOING) != 0;
+				Edge edge = new Edge(relationshipIds[index], outgoing ? nodeId : other, outgoing ? other : nodeId, 
+						relationshipTypeNames[type & ~OUTGOING]);
+				index = skip(index + 1);
+				return edge;
+			}
+			
+			private int skip(int index) {
+				for (; index < end; ++index) {
+					int type = relationshipTypes[index];
+					boolean outgoing = (type & OUTGOING) != 0;
+					// loops are stored once, as outgoing, but match both directions
+					if ((direction == Direction.OUTGOING && !outgoing) 
+							|| (direction == Direction.INCOMING && outgoing && otherNodes[index] != nodeId))
+						continue;
+					if (null == filter || filter[type & ~OUTGOING])
+						break;
+				}
+				return index;
+			}
+		};
+	}
+
+	@Override
+	public boolean isStructureInMemory() {
+		return true;
+	}
+
+	@Override
+	public void close() {
+	}
+	
+	/**
+	 * Builder of in-memory graph. Relationship ID's are sequential, starting from 0
+	 */
+	public static class Builder {
+		private static final int MAX_LABELS = 32;
+		
+		private final List<Map<String, Object>> properties = new ArrayList<Map<String, Object>>();
+		private final LongList nodeLabels = new LongList();
+		private final Map<String, Integer> labels = new HashMap<String, Integer>();
+		private final Map<String, Integer> relationshipTypes = new HashMap<String, Integer>();
+		private final LongList starts = new LongList();
+		private final LongList ends = new LongList();
+		private final LongList types = new LongList();
+		
+		/**
+		 * Function to add a node
+		 * @param properties Node properties
+		 * @param labels Node labels
+		 * @return Node ID
+		 */
+		public long addNode(Map<String, Object> properties, String... labels) {
+			int mask = 0;
+			for (String label : labels) {
+				Integer bit = this.labels.get(label);
+				if (null == bit) {
+					if (this.labels.size() == MAX_LABELS)
+						throw new IllegalStateException("In-memory graph can not have more than " + MAX_LABELS + " labels");
+					this.labels.put(label, bit = 1 << this.labels.size());
+				}
+				mask |= bit;
+			}
+			
+			this.properties.add(new HashMap<String, Object>(properties));
+			this.nodeLabels.add(mask);
+			
+			return this.properties.size() - 1;
+		}
+		
+		/**
+		 * Function to add a relationship between two existing nodes
+		 * @param start Start node ID
+		 * @param end End node ID
+		 * @param type Relationship type
+		 * @return Relationship ID
+		 */
+		public long addRelationship(long start, long end, String type) {
+			if (start < 0 || start >= properties.size() || end < 0 || end >= properties.size())
+				throw new IllegalArgumentException("Relationship nodes must exist: " + start + ", " + end);
+			
+			Integer index = relationshipTypes.get(type);
+			if (null == index)
+				relationshipTypes.put(type, index = relationshipTypes.size());
+			
+			starts.add(start);
+			ends.add(end);
+			types.add(index);
+			
+			return starts.size() - 1;
+		}
+		
+		public MemorySource build() {
+			return new MemorySource(this);
+		}
+	}
+}
@@ -0,0 +1,185 @@
+package org.rdswitchboard.exporters.graph.source;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Transaction;
+
+/**
+ * Graph source, reading embedded Neo4j database
+ * 
+ * Every session holds a read transaction. Relationships are read while iterating, 
+ * so the traversal, which stops early, does not read all relationships of a big node.
+ * 
+ * The exporter reads labels, properties and relationships of the same node one after
+ * another, so the session keeps the last looked up node and does not check the store 
+ * for it again.
+ * 
+ * @version 1.1.0
+ */
+
+public class Neo4jSource implements GraphSource {
+	private static final String PROPERTY_TYPE = "type";
+	
+	private final GraphDatabaseService graphDb;
+	private final ThreadLocal<NodeReference> lastNode = ThreadLocal.withInitial(NodeReference::new);
+	
+	/**
+	 * Create new source
+	 * @param graphDb Opened graph database, will be shut down when the source is closed
+	 */
+	public Neo4jSource(GraphDatabaseService graphDb) {
+		this.graphDb = graphDb;
+	}
+	
+	public GraphDatabaseService getGraphDb() {
+		return graphDb;
+	}
+	
+	@Override
+	public Session begin() {
+		Transaction tx = graphDb.beginTx();
+		lastNode.get().clear();
+		
+		return () -> {
+			lastNode.get().clear();
+			tx.close();
+		};
+	}
+
+	@Override
+	public long[] findNodes(String label) {
+		long[] ids = new long[1024];
+		int size = 0;
+		
+		try (ResourceIterator<Node> nodes = graphDb.findNodes(Label.label(label))) {
+			while (nodes.hasNext()) {
+				if (size == ids.length)
+					ids = Arrays.copyOf(ids, size * 2);
+				
+				ids[size++] = nodes.next().getId();
+			}
+		}
+		
+		return Arrays.copyOf(ids, size);
+	}
+
+	@Override
+	public boolean hasNode(long nodeId) {
+		try {
+			getNode(nodeId);
+			return true;
+		} catch (NotFoundException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public boolean hasLabel(long nodeId, String label) {
+		return getNode(nodeId).hasLabel(Label.label(label));
+	}
+
+	@Override
+	public String getNodeType(long nodeId) {
+		return (String) getNode(nodeId).getProperty(PROPERTY_TYPE, null);
+	}
+
+	@Override
+	public Object getProperty(long nodeId, String key) {
+		return getNode(nodeId).getProperty(key, null);
+	}
+
+	@Override
+	public Map<String, Object> getProperties(long nodeId) {
+		return getNode(nodeId).getAllProperties();
+	}
+
+	@Override
+	public int getDegree(long nodeId) {
+		return getNode(nodeId).getDegree();
+	}
+
+	@Override
+	public Iterable<Edge> getEdges(long nodeId) {
+		Node node = getNode(nodeId);
+		
+		return () -> toEdges(node.getRelationships().iterator());
+	}
+
+	@Override
+	public Iterable<Edge> getEdges(long nodeId, Direction direction, String... types) {
+		Node node = getNode(nodeId);
+		if (types.length == 0)
+			return () -> toEdges(node.getRelationships(direction).iterator());
+		
+		RelationshipType[] relationshipTypes = new RelationshipType[types.length];
+		for (int i = 0; i < types.length; ++i)
+			relationshipTypes[i] = RelationshipType.withName(types[i]);
+		
+		return () -> toEdges(node.getRelationships(direction, relationshipTypes).iterator());
+	}
+
+	@Override
+	public boolean isStructureInMemory() {
+		return false;
+	}
+
+	@Override
+	public void close() {
+		graphDb.shutdown();
+	}
+	
+	/**
+	 * Function to return the node, the last node of the calling thread is reused
+	 * @param nodeId Node ID
+	 * @return Node
+	 * @throws NotFoundException if the node does not exist
+	 */
+	private Node getNode(long nodeId) {
+		NodeReference reference = lastNode.get();
+		if (reference.id != nodeId) {
+			reference.node = graphDb.getNodeById(nodeId);
+			reference.id = nodeId;
+		}
+		
+		return reference.node;
+	}
+	
+	private static Iterator<Edge> toEdges(Iterator<Relationship> relationships) {
+		return new Iterator<Edge>() {
+				@Override
+				public boolean hasNext() {
+					return relationships.hasNext();
+				}
+
+				@Override
+				public Edge next() {
+					Relationship relationship = relationships.next();
+					return new Edge(relationship.getId(), relationship.getStartNode().getId(), 
+							relationship.getEndNode().getId(), relationship.getType().name());
+				}
+			};
+	}
+	
+	/**
+	 * The last node, looked up by a thread
+	 */
+	private static class NodeReference {
+		private long id = -1;
+		private Node node;
+		
+		private void clear() {
+			id = -1;
+			node = null;
+		}
+	}
+}
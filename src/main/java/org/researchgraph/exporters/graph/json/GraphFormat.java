@@ -0,0 +1,144 @@
+package org.researchgraph.exporters.graph.json;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
+/**
+ * Format of exported Graph documents
+ *
+ * The graph can be written as JSON or in one of binary Jackson formats, Smile or CBOR.
+ * Binary documents have exactly the same structure as JSON ones and can be read with
+ * the same {@link JsonGraph} model and the format {@link ObjectMapper}. Only JSON documents
+ * can be assembled from pre-serialized {@link NodeFragment}'s.
+ *
+ * Document names are created for JSON and end with .json, the other formats replace
+ * the extension with their own: .smile or .cbor.
+ *
+ * Smile documents share repeated property names and short string values, like node
+ * types and sources, with back references.
+ *
+ * @version 1.0.0
+ */
+
+public final class GraphFormat {
+	public static final String JSON = "json";
+	public static final String SMILE = "smile";
+	public static final String CBOR = "cbor";
+	
+	private static final String JSON_EXTENSION = ".json";
+	
+	private static final GraphFormat FORMAT_JSON = new GraphFormat(JSON, new JsonFactory());
+	private static final GraphFormat FORMAT_SMILE = new GraphFormat(SMILE,
+			new SmileFactory().enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES));
+	private static final GraphFormat FORMAT_CBOR = new GraphFormat(CBOR, new CBORFactory());
+	
+	private final String name;
+	private final String extension;
+	private final ObjectMapper mapper;
+	
+	private GraphFormat(String name, JsonFactory factory) {
+		this.name = name;
+		this.extension = "." + name;
+		// the mapper sets itself as the factory codec, used for non standard property values
+		this.mapper = new ObjectMapper(factory);
+	}
+	
+	/**
+	 * Function to return format by it's name
+	 * @param name json, smile or cbor
+	 * @return GraphFormat
+	 * @throws IllegalArgumentException if the format is unknown
+	 */
+	public static GraphFormat get(String name) {
+		if (JSON.equals(name))
+			return FORMAT_JSON;
+		if (SMILE.equals(name))
+			return FORMAT_SMILE;
+		if (CBOR.equals(name))
+			return FORMAT_CBOR;
+		
+		throw new IllegalArgumentException("Unknown document format: " + name);
+	}
+	
+	/**
+	 * Function to parse comma separated list of formats. Repeated formats are ignored
+	 * @param names Format names, for example json,smile
+	 * @return List of formats in the order of their names
+	 * @throws IllegalArgumentException if a format is unknown or the list is empty
+	 */
+	public static List<GraphFormat> parse(String names) {
+		Set<GraphFormat> formats = new LinkedHashSet<GraphFormat>();
+		if (null != names)
+			for (String name : names.split(","))
+				if (!name.trim().isEmpty())
+					formats.add(get(name.trim().toLowerCase()));
+		
+		if (formats.isEmpty())
+			throw new IllegalArgumentException("No document format has been specified");
+		
+		return new ArrayList<GraphFormat>(formats);
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public String getExtension() {
+		return extension;
+	}
+	
+	/**
+	 * Function to return mapper, able to read and write documents in this format
+	 * @return ObjectMapper
+	 */
+	public ObjectMapper getMapper() {
+		return mapper;
+	}
+	
+	/**
+	 * Function to return true if documents can be assembled from JSON node fragments
+	 * @return boolean
+	 */
+	public boolean isJson() {
+		return this == FORMAT_JSON;
+	}
+	
+	/**
+	 * Function to create new streaming writer of this format
+	 * @return JsonGraphWriter
+	 */
+	public JsonGraphWriter createWriter() {
+		return new JsonGraphWriter(mapper.getFactory());
+	}
+	
+	/**
+	 * Function to convert JSON document names to names of this format
+	 * @param jsonNames Document names, ending with .json
+	 * @return the same list for JSON format, new list for the other formats
+	 */
+	public List<String> getNames(List<String> jsonNames) {
+		if (isJson())
+			return jsonNames;
+		
+		List<String> names = new ArrayList<String>(jsonNames.size());
+		for (String jsonName : jsonNames)
+			names.add(jsonName.endsWith(JSON_EXTENSION)
+					? jsonName.substring(0, jsonName.length() - JSON_EXTENSION.length()) + extension
+					: jsonName + extension);
+		
+		return names;
+	}
+	
+	@Override
+	public String toString() {
+		return name;
+	}
+}
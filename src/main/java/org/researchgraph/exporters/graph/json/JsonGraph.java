@@ -1,6 +1,7 @@
 package org.researchgraph.exporters.graph.json;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
@@ -40,5 +41,17 @@ public class JsonGraph {
 			relationships = new ArrayList<JsonRelationship>();
 		
 		relationships.add(relationship);
-	}		
+	}
+	
+	/**
+	 * Function to sort nodes and relationships by id. 
+	 * The sorted graph will always be serialized the same way, regardless of 
+	 * the order the nodes and relationships have been added.
+	 */
+	public void sort() {
+		if (null != nodes)
+			nodes.sort(Comparator.comparingLong(JsonNode::getId));
+		if (null != relationships)
+			relationships.sort(Comparator.comparingLong(JsonRelationship::getId));
+	}
 }
@@ -0,0 +1,331 @@
+package org.researchgraph.exporters.graph.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedMap;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Streaming writer for Graph in JSON format
+ *
+ * Writes nodes and relationships one by one with Jackson {@link JsonGenerator} directly
+ * into reusable byte buffer, without building {@link JsonGraph} object model and without
+ * intermediate String. The output has the same layout as serialized {@link JsonGraph}:
+ * the array of nodes, followed by optional array of relationships. All nodes must be
+ * written before the first relationship. Node properties are always written in the 
+ * order of their names, so the same graph will always produce the same document.
+ *
+ * Usage:
+ *   writer.writeStartGraph();
+ *   writer.writeNode(...);
+ *   writer.writeRelationship(...);
+ *   writer.writeEndGraph();
+ *
+ *   writer.getBuffer() and writer.getSize() will contain the document until next writeStartGraph()
+ *
+ * Nodes, which are written into many documents, can be serialized once with 
+ * {@link JsonGraphWriter#createFragment(long, String, Map)}, the fragment is then
+ * copied into every document with {@link JsonGraphWriter#writeNode(NodeFragment, boolean, boolean)}
+ * and produces the same output as {@link JsonGraphWriter#writeNode(long, String, boolean, boolean, Map)}.
+ *
+ * The writer can also produce binary documents of the same structure, if it has been
+ * created with a binary Jackson factory, like Smile or CBOR. Fragments are raw JSON
+ * and can only be used by JSON writers, see {@link JsonGraphWriter#isJson()}.
+ *
+ * @version 1.2.0
+ */
+
+public class JsonGraphWriter {
+	private static final String FIELD_NODES = "nodes";
+	private static final String FIELD_RELATIONSHIPS = "relationships";
+	private static final String FIELD_ID = "id";
+	private static final String FIELD_TYPE = "type";
+	private static final String FIELD_EXTRAS = "extras";
+	private static final String FIELD_PROPERTIES = "properties";
+	private static final String FIELD_FROM = "from";
+	private static final String FIELD_TO = "to";
+	
+	private static final RawUtf8 EXTRAS_ROOT = createExtras(JsonNode.EXTRA_ROOT);
+	private static final RawUtf8 EXTRAS_INCOMPLETE = createExtras(JsonNode.EXTRA_INCOMPLETE);
+	private static final RawUtf8 EXTRAS_INCOMPLETE_ROOT = createExtras(JsonNode.EXTRA_INCOMPLETE, JsonNode.EXTRA_ROOT);
+
+	private final JsonFactory factory;
+	private final Buffer buffer = new Buffer();
+	private final Buffer fragmentBuffer = new Buffer();
+
+	private JsonGenerator generator;
+	private boolean relationships;
+	private String[] keys = new String[16];
+
+	/**
+	 * Create new writer.
+	 * @param factory JsonFactory. Factory codec will be used to write non standard property values
+	 */
+	public JsonGraphWriter(JsonFactory factory) {
+		this.factory = factory;
+	}
+
+	/**
+	 * Function to return true if the writer produces JSON and can write node fragments
+	 * @return boolean
+	 */
+	public boolean isJson() {
+		return JsonFactory.FORMAT_NAME_JSON.equals(factory.getFormatName());
+	}
+
+	/**
+	 * Function to begin new document. The previous document will be discarded.
+	 * @throws IOException
+	 */
+	public void writeStartGraph() throws IOException {
+		buffer.reset();
+		relationships = false;
+
+		generator = factory.createGenerator(buffer, JsonEncoding.UTF8);
+		generator.writeStartObject();
+		generator.writeArrayFieldStart(FIELD_NODES);
+	}
+
+	/**
+	 * Function to write a single node
+	 * @param id Node id
+	 * @param type Node type
+	 * @param root true if node is the root node
+	 * @param incomplete true if not all node relationships has been exported
+	 * @param properties Node properties
+	 * @throws IOException
+	 */
+	public void writeNode(long id, String type, boolean root, boolean incomplete,
+			Map<String, Object> properties) throws IOException {
+		generator.writeStartObject();
+		generator.writeNumberField(FIELD_ID, id);
+		if (null != type)
+			generator.writeStringField(FIELD_TYPE, type);
+
+		if (root || incomplete) {
+			// keep the same order, as JsonNode extras set has
+			generator.writeArrayFieldStart(FIELD_EXTRAS);
+			if (incomplete)
+				generator.writeString(JsonNode.EXTRA_INCOMPLETE);
+			if (root)
+				generator.writeString(JsonNode.EXTRA_ROOT);
+			generator.writeEndArray();
+		}
+
+		writeProperties(generator, properties);
+
+		generator.writeEndObject();
+	}
+
+	/**
+	 * Function to write a single pre-serialized node
+	 * @param fragment Node fragment
+	 * @param root true if node is the root node
+	 * @param incomplete true if not all node relationships has been exported
+	 * @throws IOException
+	 */
+	public void writeNode(NodeFragment fragment, boolean root, boolean incomplete) throws IOException {
+		generator.writeRawValue(fragment.head);
+		if (root || incomplete)
+			generator.writeRaw(incomplete ? (root ? EXTRAS_INCOMPLETE_ROOT : EXTRAS_INCOMPLETE) : EXTRAS_ROOT);
+		generator.writeRaw(fragment.tail);
+	}
+
+	/**
+	 * Function to serialize a node, which can be written into many documents.
+	 * Can be called while writing the document.
+	 * @param id Node id
+	 * @param type Node type
+	 * @param properties Node properties
+	 * @return NodeFragment
+	 * @throws IOException
+	 */
+	public NodeFragment createFragment(long id, String type, Map<String, Object> properties) throws IOException {
+		fragmentBuffer.reset();
+		
+		int split;
+		try (JsonGenerator fragment = factory.createGenerator(fragmentBuffer, JsonEncoding.UTF8)) {
+			fragment.writeStartObject();
+			fragment.writeNumberField(FIELD_ID, id);
+			if (null != type)
+				fragment.writeStringField(FIELD_TYPE, type);
+			fragment.flush();
+			split = fragmentBuffer.size();
+			
+			writeProperties(fragment, properties);
+			fragment.writeEndObject();
+		}
+		
+		byte[] bytes = fragmentBuffer.getBuffer();
+		return new NodeFragment(new RawUtf8(Arrays.copyOf(bytes, split)), 
+				new RawUtf8(Arrays.copyOfRange(bytes, split, fragmentBuffer.size())));
+	}
+
+	/**
+	 * Function to write a single node
+	 * @param node JsonNode
+	 * @throws IOException
+	 */
+	public void writeNode(JsonNode node) throws IOException {
+		boolean root = false;
+		boolean incomplete = false;
+		if (null != node.getExtras()) {
+			root = node.getExtras().contains(JsonNode.EXTRA_ROOT);
+			incomplete = node.getExtras().contains(JsonNode.EXTRA_INCOMPLETE);
+		}
+
+		writeNode(node.getId(), node.getType(), root, incomplete, node.getProperties());
+	}
+
+	/**
+	 * Function to write a single relationship.
+	 * @param id Relationship id
+	 * @param from Start node id
+	 * @param to End node id
+	 * @param type Relationship type
+	 * @throws IOException
+	 */
+	public void writeRelationship(long id, long from, long to, String type) throws IOException {
+		if (!relationships) {
+			generator.writeEndArray();
+			generator.writeArrayFieldStart(FIELD_RELATIONSHIPS);
+			relationships = true;
+		}
+
+		generator.writeStartObject();
+		generator.writeNumberField(FIELD_ID, id);
+		generator.writeNumberField(FIELD_FROM, from);
+		generator.writeNumberField(FIELD_TO, to);
+		if (null != type)
+			generator.writeStringField(FIELD_TYPE, type);
+		generator.writeEndObject();
+	}
+
+	/**
+	 * Function to write a single relationship.
+	 * @param relationship JsonRelationship
+	 * @throws IOException
+	 */
+	public void writeRelationship(JsonRelationship relationship) throws IOException {
+		writeRelationship(relationship.getId(), relationship.getFrom(), relationship.getTo(), relationship.getType());
+	}
+
+	/**
+	 * Function to finish the document
+	 * @throws IOException
+	 */
+	public void writeEndGraph() throws IOException {
+		generator.writeEndArray();
+		generator.writeEndObject();
+		generator.close();
+		generator = null;
+	}
+
+	/**
+	 * Function to write the whole graph as a document
+	 * @param graph JsonGraph
+	 * @throws IOException
+	 */
+	public void write(JsonGraph graph) throws IOException {
+		writeStartGraph();
+		if (null != graph.getNodes())
+			for (JsonNode node : graph.getNodes())
+				writeNode(node);
+		if (null != graph.getRelationships())
+			for (JsonRelationship relationship : graph.getRelationships())
+				writeRelationship(relationship);
+		writeEndGraph();
+	}
+
+	/**
+	 * Function to return the buffer, containing the last document.
+	 * Only first {@link JsonGraphWriter#getSize()} bytes are valid.
+	 * The buffer will be reused for the next document.
+	 * @return byte array
+	 */
+	public byte[] getBuffer() {
+		return buffer.getBuffer();
+	}
+
+	/**
+	 * Function to return size of the last document in bytes
+	 * @return int
+	 */
+	public int getSize() {
+		return buffer.size();
+	}
+
+	private void writeProperties(JsonGenerator generator, Map<String, Object> properties) throws IOException {
+		generator.writeObjectFieldStart(FIELD_PROPERTIES);
+		if (properties instanceof SortedMap) {
+			for (Map.Entry<String, Object> property : properties.entrySet()) {
+				generator.writeFieldName(property.getKey());
+				writeValue(generator, property.getValue());
+			}
+		} else {
+			int size = properties.size();
+			if (keys.length < size)
+				keys = new String[size];
+			
+			properties.keySet().toArray(keys);
+			Arrays.sort(keys, 0, size);
+			for (int i = 0; i < size; ++i) {
+				generator.writeFieldName(keys[i]);
+				writeValue(generator, properties.get(keys[i]));
+			}
+		}
+		generator.writeEndObject();
+	}
+
+	private static void writeValue(JsonGenerator generator, Object value) throws IOException {
+		if (value instanceof String)
+			generator.writeString((String) value);
+		else if (value instanceof Integer)
+			generator.writeNumber((Integer) value);
+		else if (value instanceof Long)
+			generator.writeNumber((Long) value);
+		else if (value instanceof Double)
+			generator.writeNumber((Double) value);
+		else if (value instanceof Boolean)
+			generator.writeBoolean((Boolean) value);
+		else if (value instanceof String[]) {
+			String[] array = (String[]) value;
+			generator.writeStartArray(array.length);
+			for (String s : array)
+				generator.writeString(s);
+			generator.writeEndArray();
+		} else
+			generator.writeObject(value);
+	}
+
+	private static RawUtf8 createExtras(String... extras) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(",\"").append(FIELD_EXTRAS).append("\":[");
+		for (int i = 0; i < extras.length; ++i) {
+			if (i > 0)
+				sb.append(',');
+			sb.append('"').append(extras[i]).append('"');
+		}
+		sb.append(']');
+		
+		return new RawUtf8(sb.toString());
+	}
+
+	/**
+	 * ByteArrayOutputStream, providing access to it's internal buffer
+	 */
+	private static class Buffer extends ByteArrayOutputStream {
+		public Buffer() {
+			super(8192);
+		}
+
+		public byte[] getBuffer() {
+			return buf;
+		}
+	}
+}
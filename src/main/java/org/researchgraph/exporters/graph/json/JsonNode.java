@@ -1,9 +1,9 @@
 package org.researchgraph.exporters.graph.json;
 
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 
@@ -29,7 +29,8 @@ public class JsonNode {
 	private String type;
 	private Set<String> extras;
 
-	private final Map<String, Object> properties = new HashMap<String, Object>();
+	// properties are kept sorted, so the same node will always be serialized the same way
+	private final Map<String, Object> properties = new TreeMap<String, Object>();
 
 	public long getId() {
 		return id;
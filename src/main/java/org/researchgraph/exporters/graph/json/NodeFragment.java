@@ -0,0 +1,45 @@
+package org.researchgraph.exporters.graph.json;
+
+/**
+ * Pre-serialized node
+ * 
+ * Holds the node as UTF-8 JSON, split in two parts around the place of the optional
+ * extras array, which depends on the document the node is written into:
+ * 
+ *   {"id":1,"type":"dataset"   ,"properties":{...}}
+ *   
+ * The fragment does not depend on the document and can be shared between writers.
+ * Use {@link JsonGraphWriter#createFragment(long, String, java.util.Map)} to create 
+ * the fragment and {@link JsonGraphWriter#writeNode(NodeFragment, boolean, boolean)} to 
+ * write it.
+ * 
+ * @version 1.0.0
+ */
+
+public final class NodeFragment {
+	private static final int OBJECT_SIZE = 64;
+	
+	final RawUtf8 head;
+	final RawUtf8 tail;
+	
+	NodeFragment(RawUtf8 head, RawUtf8 tail) {
+		this.head = head;
+		this.tail = tail;
+	}
+	
+	/**
+	 * Function to return the length of serialized node, without extras
+	 * @return int
+	 */
+	public int getLength() {
+		return head.size() + tail.size();
+	}
+	
+	/**
+	 * Function to return estimated memory size of the fragment in bytes
+	 * @return long
+	 */
+	public long getSize() {
+		return OBJECT_SIZE + getLength();
+	}
+}
@@ -0,0 +1,118 @@
+package org.researchgraph.exporters.graph.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.core.SerializableString;
+
+/**
+ * Ready to emit UTF-8 JSON fragment
+ * 
+ * Jackson UTF-8 generator copies the bytes of raw {@link SerializableString} directly into
+ * it's output buffer, so the fragment is written without any encoding. Only unquoted
+ * forms are supported, the fragment is not a JSON string.
+ * 
+ * @version 1.0.0
+ */
+
+final class RawUtf8 implements SerializableString {
+	private final byte[] bytes;
+	
+	RawUtf8(byte[] bytes) {
+		this.bytes = bytes;
+	}
+	
+	RawUtf8(String value) {
+		this(value.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	int size() {
+		return bytes.length;
+	}
+	
+	@Override
+	public String getValue() {
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public int charLength() {
+		return getValue().length();
+	}
+
+	@Override
+	public byte[] asUnquotedUTF8() {
+		return bytes;
+	}
+
+	@Override
+	public int appendUnquotedUTF8(byte[] buffer, int offset) {
+		if (offset + bytes.length > buffer.length)
+			return -1;
+		
+		System.arraycopy(bytes, 0, buffer, offset, bytes.length);
+		return bytes.length;
+	}
+
+	@Override
+	public int appendUnquoted(char[] buffer, int offset) {
+		String value = getValue();
+		if (offset + value.length() > buffer.length)
+			return -1;
+		
+		value.getChars(0, value.length(), buffer, offset);
+		return value.length();
+	}
+
+	@Override
+	public int writeUnquotedUTF8(OutputStream out) throws IOException {
+		out.write(bytes);
+		return bytes.length;
+	}
+
+	@Override
+	public int putUnquotedUTF8(ByteBuffer buffer) {
+		if (bytes.length > buffer.remaining())
+			return -1;
+		
+		buffer.put(bytes);
+		return bytes.length;
+	}
+
+	@Override
+	public char[] asQuotedChars() {
+		throw new UnsupportedOperationException("Raw JSON fragment can not be quoted");
+	}
+
+	@Override
+	public byte[] asQuotedUTF8() {
+		throw new UnsupportedOperationException("Raw JSON fragment can not be quoted");
+	}
+
+	@Override
+	public int appendQuotedUTF8(byte[] buffer, int offset) {
+		throw new UnsupportedOperationException("Raw JSON fragment can not be quoted");
+	}
+
+	@Override
+	public int appendQuoted(char[] buffer, int offset) {
+		throw new UnsupportedOperationException("Raw JSON fragment can not be quoted");
+	}
+
+	@Override
+	public int writeQuotedUTF8(OutputStream out) throws IOException {
+		throw new UnsupportedOperationException("Raw JSON fragment can not be quoted");
+	}
+
+	@Override
+	public int putQuotedUTF8(ByteBuffer buffer) {
+		throw new UnsupportedOperationException("Raw JSON fragment can not be quoted");
+	}
+	
+	@Override
+	public String toString() {
+		return getValue();
+	}
+}
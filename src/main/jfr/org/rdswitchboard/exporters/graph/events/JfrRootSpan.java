@@ -0,0 +1,86 @@
+package org.rdswitchboard.exporters.graph.events;
+
+import java.util.function.Supplier;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Root export span, recorded as Java Flight Recorder event
+ * 
+ * The event duration covers the whole root export. isEnabled() and commit() are 
+ * implemented by {@link Event}. This class is only compiled 
+ * if the JDK provides JFR API (see jfr profiles in pom.xml) and must not be 
+ * referenced directly, {@link RootSpans} will load it if it is available.
+ * 
+ * @version 1.0.0
+ */
+
+@Name("org.rdswitchboard.ExportRoot")
+@Label("Export Root")
+@Category({ "Research Graph", "Export" })
+@Description("Export of a single root node")
+@StackTrace(false)
+public class JfrRootSpan extends Event implements RootSpan {
+	@Label("Node ID")
+	long nodeId;
+	
+	@Label("Nodes")
+	@Description("Number of nodes in the neighbourhood")
+	int nodes;
+	
+	@Label("Relationships")
+	@Description("Number of exported relationships")
+	int relationships;
+	
+	@Label("Traversal")
+	@Timespan(Timespan.NANOSECONDS)
+	long traversal;
+	
+	@Label("Serialization")
+	@Timespan(Timespan.NANOSECONDS)
+	long serialization;
+	
+	@Label("Sink")
+	@Description("Time to pass the document to all sinks")
+	@Timespan(Timespan.NANOSECONDS)
+	long sink;
+	
+	@Label("Bytes")
+	@DataAmount
+	long bytes;
+	
+	@Override
+	public void setGraph(long nodeId, int nodes, int relationships) {
+		this.nodeId = nodeId;
+		this.nodes = nodes;
+		this.relationships = relationships;
+	}
+
+	@Override
+	public void setTimes(long traversal, long serialization, long sink) {
+		this.traversal = traversal;
+		this.serialization = serialization;
+		this.sink = sink;
+	}
+
+	@Override
+	public void setBytes(long bytes) {
+		this.bytes = bytes;
+	}
+
+	public static class Factory implements Supplier<RootSpan> {
+		@Override
+		public RootSpan get() {
+			JfrRootSpan span = new JfrRootSpan();
+			span.begin();
+			return span;
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package org.rdswitchboard.exporters.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of the export checkpoint
+ *
+ * @version 1.1.0
+ */
+
+public class CheckpointTest {
+	private static final long[] CANDIDATES = { 2, 5, 7, 11, 13, 17, 19, 23, 29, 31 };
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testWatermark() throws IOException {
+		Checkpoint checkpoint = new Checkpoint(new File(folder.getRoot(), "checkpoint").getPath());
+		checkpoint.start(CANDIDATES, 0, 3);
+
+		// ranges completed out of order do not move the watermark past the first incomplete range
+		checkpoint.complete(1, 3, 1);
+		checkpoint.complete(2, 2, 0);
+		assertEquals(2, checkpoint.getNodeId());
+		assertEquals(0, checkpoint.getExported());
+
+		checkpoint.complete(0, 3, 0);
+		assertEquals(31, checkpoint.getNodeId());
+		assertEquals(8, checkpoint.getExported());
+		assertEquals(1, checkpoint.getSkipped());
+
+		checkpoint.complete(3, 1, 0);
+		assertEquals(Long.MAX_VALUE, checkpoint.getNodeId());
+		assertEquals(9, checkpoint.getExported());
+	}
+
+	@Test
+	public void testSaveAndResume() throws IOException {
+		File file = new File(folder.getRoot(), "checkpoint");
+
+		Checkpoint checkpoint = new Checkpoint(file.getPath());
+		assertFalse(checkpoint.load());
+
+		checkpoint.start(CANDIDATES, 0, 4);
+		checkpoint.complete(0, 4, 2);
+		checkpoint.save(checkpoint.getState());
+
+		// the state taken before a range completes is the one stored
+		Properties state = checkpoint.getState();
+		checkpoint.complete(1, 4, 0);
+		checkpoint.setOutput(state, "export-000001.ndjson", 1234);
+		checkpoint.save(state);
+		assertFalse(new File(file.getPath() + ".tmp").exists());
+
+		Checkpoint resumed = new Checkpoint(file.getPath());
+		assertTrue(resumed.load());
+		assertEquals(13, resumed.getNodeId());
+		assertEquals(4, resumed.getExported());
+		assertEquals(2, resumed.getSkipped());
+		assertEquals("export-000001.ndjson", resumed.getOutputFile());
+		assertEquals(1234, resumed.getOutputSize());
+
+		// the resumed export continues from the candidate of the stored node
+		int first = Arrays.binarySearch(CANDIDATES, resumed.getNodeId());
+		resumed.start(CANDIDATES, first, 4);
+		resumed.complete(0, 4, 0);
+		assertEquals(29, resumed.getNodeId());
+		assertEquals(8, resumed.getExported());
+		resumed.complete(1, 2, 1);
+		assertEquals(Long.MAX_VALUE, resumed.getNodeId());
+		assertEquals(10, resumed.getExported());
+		assertEquals(3, resumed.getSkipped());
+
+		resumed.delete();
+		assertFalse(file.exists());
+	}
+
+	@Test
+	public void testSaveDue() {
+		Checkpoint checkpoint = new Checkpoint(new File(folder.getRoot(), "checkpoint").getPath());
+		checkpoint.start(CANDIDATES, 0, 3);
+
+		assertTrue(checkpoint.isSaveDue(0));
+		assertFalse(checkpoint.isSaveDue(60000));
+	}
+}
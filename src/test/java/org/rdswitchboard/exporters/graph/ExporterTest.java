@@ -0,0 +1,167 @@
+package org.rdswitchboard.exporters.graph;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.rdswitchboard.exporters.graph.source.MemorySource;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Tests of the whole export of a small in-memory graph
+ *
+ * @version 1.0.0
+ */
+
+public class ExporterTest {
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+	private static final String RELATED_TO = "relatedTo";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private MemorySource graph;
+	private File output;
+
+	/**
+	 * Creates the graph:
+	 *
+	 *   dataset (dara) - publication (ands) - researcher (orcid)
+	 *         |
+	 *   grant (arc, not exported)
+	 *
+	 * and a dataset without relationships, which has no document
+	 */
+	@Before
+	public void setUp() throws IOException {
+		MemorySource.Builder builder = new MemorySource.Builder();
+		long dataset = builder.addNode(properties("dataset", "doi", "10.1/a"), "dara", "dataset");
+		long publication = builder.addNode(properties("publication", "local_id", new String[] { "p-1", "p/2" }), "ands", "publication");
+		long researcher = builder.addNode(properties("researcher", "orcid", "0000-1"), "orcid", "researcher");
+		long grant = builder.addNode(properties("grant", "local_id", "g-1"), "arc", "grant");
+		builder.addNode(properties("dataset", "doi", "10.1/b"), "dara", "dataset");
+
+		builder.addRelationship(dataset, publication, RELATED_TO);
+		builder.addRelationship(researcher, publication, RELATED_TO);
+		builder.addRelationship(dataset, grant, RELATED_TO);
+		graph = builder.build();
+
+		output = folder.newFolder("output");
+	}
+
+	@Test
+	public void testDocuments() throws Exception {
+		createExporter().process(App.createSources());
+
+		assertEquals(new TreeSet<String>(Arrays.asList("dara/10.1%2Fa.json", "ands/p-1.json", "ands/p%2F2.json",
+				"orcid/0000-1.json")), listDocuments());
+
+		// the dataset document holds all nodes up to two relationships away, sorted by ID
+		JsonNode dataset = readDocument("dara/10.1%2Fa.json");
+		assertArrayEquals(new long[] { 0, 1, 2, 3 }, getIds(dataset.get("nodes")));
+		assertArrayEquals(new long[] { 0, 1, 2 }, getIds(dataset.get("relationships")));
+		assertEquals("dataset", dataset.get("nodes").get(0).get("type").asText());
+		assertEquals("10.1/a", dataset.get("nodes").get(0).get("properties").get("doi").asText());
+		assertEquals(2, dataset.get("relationships").get(1).get("from").asLong());
+		assertEquals(1, dataset.get("relationships").get(1).get("to").asLong());
+		assertEquals(RELATED_TO, dataset.get("relationships").get(1).get("type").asText());
+
+		// the grant is three relationships away from the researcher, so the dataset is incomplete
+		JsonNode researcher = readDocument("orcid/0000-1.json");
+		assertArrayEquals(new long[] { 0, 1, 2 }, getIds(researcher.get("nodes")));
+		assertArrayEquals(new long[] { 0, 1 }, getIds(researcher.get("relationships")));
+		assertEquals("incomplete", researcher.get("nodes").get(0).get("extras").get(0).asText());
+		assertEquals("root", researcher.get("nodes").get(2).get("extras").get(0).asText());
+		assertFalse(researcher.get("nodes").get(1).has("extras"));
+
+		// every key of the publication is an alias of the same document
+		assertEquals(readDocument("ands/p-1.json"), readDocument("ands/p%2F2.json"));
+		assertArrayEquals(new long[] { 0, 1, 2, 3 }, getIds(readDocument("ands/p-1.json").get("nodes")));
+	}
+
+	@Test
+	public void testUnchangedDocuments() throws Exception {
+		File manifest = new File(folder.getRoot(), "manifest.tsv");
+
+		Exporter exporter = createExporter();
+		exporter.setManifestFile(manifest.getPath());
+		exporter.setSkipUnchanged(true);
+		exporter.process(App.createSources());
+
+		byte[] document = Files.readAllBytes(new File(output, "dara/10.1%2Fa.json").toPath());
+		FileUtils.cleanDirectory(output);
+
+		// the second export finds all documents in the manifest and does not write them again
+		exporter = createExporter();
+		exporter.setManifestFile(manifest.getPath());
+		exporter.setSkipUnchanged(true);
+		exporter.process(App.createSources());
+		assertTrue(listDocuments().isEmpty());
+
+		// the export without the manifest writes the same documents
+		createExporter().process(App.createSources());
+		assertArrayEquals(document, Files.readAllBytes(new File(output, "dara/10.1%2Fa.json").toPath()));
+	}
+
+	private Exporter createExporter() {
+		Exporter exporter = new Exporter();
+		exporter.setGraphSource(graph);
+		exporter.setOutputFolder(output.getPath());
+		exporter.setMaxLevel(1);
+		exporter.setProgressInterval(0);
+
+		return exporter;
+	}
+
+	private TreeSet<String> listDocuments() {
+		TreeSet<String> names = new TreeSet<String>();
+		Collection<File> files = FileUtils.listFiles(output, null, true);
+		for (File file : files)
+			names.add(output.toPath().relativize(file.toPath()).toString());
+
+		return names;
+	}
+
+	private JsonNode readDocument(String name) throws IOException {
+		return MAPPER.readTree(new File(output, name));
+	}
+
+	private static long[] getIds(JsonNode array) {
+		List<Long> ids = new ArrayList<Long>();
+		for (JsonNode element : array)
+			ids.add(element.get("id").asLong());
+
+		long[] result = new long[ids.size()];
+		for (int i = 0; i < result.length; ++i)
+			result[i] = ids.get(i);
+
+		return result;
+	}
+
+	private static Map<String, Object> properties(String type, String key, Object value) {
+		Map<String, Object> properties = new HashMap<String, Object>();
+		properties.put("type", type);
+		properties.put(key, value);
+
+		return properties;
+	}
+}
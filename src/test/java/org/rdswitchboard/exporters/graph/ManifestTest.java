@@ -0,0 +1,78 @@
+package org.rdswitchboard.exporters.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of the manifest of exported documents
+ *
+ * @version 1.0.0
+ */
+
+public class ManifestTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testUnchanged() throws IOException {
+		String file = new File(folder.getRoot(), "manifest.tsv").getPath();
+
+		Manifest manifest = new Manifest(file, true, false);
+		manifest.add(Arrays.asList("dara/1.json", "ands/1.json"), "d1");
+		manifest.commit();
+
+		manifest = new Manifest(file, true, false);
+		assertTrue(manifest.isUnchanged(Arrays.asList("dara/1.json", "ands/1.json"), "d1"));
+		assertFalse(manifest.isUnchanged(Arrays.asList("dara/1.json", "ands/1.json"), "d2"));
+		assertFalse(manifest.isUnchanged(Arrays.asList("dara/1.json", "nci/1.json"), "d1"));
+		manifest.close();
+	}
+
+	@Test
+	public void testResume() throws IOException {
+		File file = new File(folder.getRoot(), "manifest.tsv");
+		File tempFile = new File(file.getPath() + ".tmp");
+
+		Manifest manifest = new Manifest(file.getPath(), false, false);
+		manifest.add(Arrays.asList("dara/1.json", "ands/1.json"), "d1");
+		manifest.close();
+
+		// the interrupted export has written a part of the line
+		Files.write(tempFile.toPath(), "dara/2.json\tdara/2.js".getBytes(StandardCharsets.UTF_8),
+				StandardOpenOption.APPEND);
+
+		manifest = new Manifest(file.getPath(), false, true);
+		manifest.add(Arrays.asList("dara/2.json"), "d2");
+		manifest.commit();
+
+		List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+		assertEquals(Arrays.asList("dara/1.json\tdara/1.json\td1", "ands/1.json\tdara/1.json\td1",
+				"dara/2.json\tdara/2.json\td2"), lines);
+		assertFalse(tempFile.exists());
+	}
+
+	@Test
+	public void testResumePartialFirstLine() throws IOException {
+		File file = new File(folder.getRoot(), "manifest.tsv");
+		Files.write(new File(file.getPath() + ".tmp").toPath(), "dara/1.js".getBytes(StandardCharsets.UTF_8));
+
+		Manifest manifest = new Manifest(file.getPath(), false, true);
+		manifest.add(Arrays.asList("dara/1.json"), "d1");
+		manifest.commit();
+
+		assertEquals(Arrays.asList("dara/1.json\tdara/1.json\td1"), Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,92 @@
+package org.rdswitchboard.exporters.graph;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.rdswitchboard.exporters.graph.source.Edge;
+
+/**
+ * Tests of relationships, recorded by the traversal
+ *
+ * @version 1.0.0
+ */
+
+public class RelationshipBufferTest {
+	@Test
+	public void testCommittedRanges() {
+		RelationshipBuffer buffer = new RelationshipBuffer();
+
+		buffer.begin();
+		buffer.add(new Edge(10, 1, 2, "relatedTo"));
+		buffer.add(new Edge(11, 3, 1, "knownAs"));
+		buffer.commit(1);
+
+		buffer.begin();
+		buffer.add(new Edge(12, 2, 4, "relatedTo"));
+		buffer.commit(2);
+
+		assertRange(buffer.getRange(1), 0, 2);
+		assertRange(buffer.getRange(2), 2, 3);
+		assertEquals(-1, buffer.getRange(3));
+
+		assertEquals(3, buffer.getStart(1));
+		assertEquals(1, buffer.getEnd(1));
+
+		Edge edge = buffer.getEdge(1);
+		assertEquals(11, edge.getId());
+		assertEquals(3, edge.getStart());
+		assertEquals(1, edge.getEnd());
+		assertEquals("knownAs", edge.getType());
+		assertEquals("relatedTo", buffer.getEdge(2).getType());
+	}
+
+	@Test
+	public void testDiscardedRelationships() {
+		RelationshipBuffer buffer = new RelationshipBuffer();
+
+		buffer.begin();
+		buffer.add(new Edge(10, 1, 2, "relatedTo"));
+		buffer.commit(1);
+
+		// the traversal of node 2 has been stopped, it's relationships are not committed
+		buffer.begin();
+		buffer.add(new Edge(20, 2, 5, "relatedTo"));
+
+		buffer.begin();
+		buffer.add(new Edge(30, 3, 1, "relatedTo"));
+		buffer.commit(3);
+
+		assertEquals(-1, buffer.getRange(2));
+		assertRange(buffer.getRange(3), 1, 2);
+		assertEquals(30, buffer.getEdge(1).getId());
+	}
+
+	@Test
+	public void testGrowthAndClear() {
+		RelationshipBuffer buffer = new RelationshipBuffer();
+
+		buffer.begin();
+		for (int i = 0; i < 1000; ++i)
+			buffer.add(new Edge(i, 1, i + 2, "type" + (i % 3)));
+		buffer.commit(1);
+
+		assertRange(buffer.getRange(1), 0, 1000);
+		assertEquals(999, buffer.getEdge(999).getId());
+		assertEquals(1001, buffer.getEnd(999));
+		assertEquals("type0", buffer.getEdge(999).getType());
+
+		buffer.clear();
+		assertEquals(-1, buffer.getRange(1));
+
+		buffer.begin();
+		buffer.add(new Edge(5, 7, 8, "type2"));
+		buffer.commit(7);
+		assertRange(buffer.getRange(7), 0, 1);
+		assertEquals("type2", buffer.getEdge(0).getType());
+	}
+
+	private static void assertRange(long range, int first, int end) {
+		assertEquals(first, (int) (range >>> 32));
+		assertEquals(end, (int) range);
+	}
+}
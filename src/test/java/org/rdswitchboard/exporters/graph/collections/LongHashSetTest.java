@@ -0,0 +1,108 @@
+package org.rdswitchboard.exporters.graph.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests of primitive long set
+ *
+ * @version 1.0.0
+ */
+
+public class LongHashSetTest {
+	@Test
+	public void testAddAndContains() {
+		LongHashSet set = new LongHashSet();
+
+		assertTrue(set.isEmpty());
+		assertTrue(set.add(0));
+		assertTrue(set.add(42));
+		assertFalse(set.add(42));
+
+		assertEquals(2, set.size());
+		assertTrue(set.contains(0));
+		assertTrue(set.contains(42));
+		assertFalse(set.contains(1));
+	}
+
+	@Test
+	public void testGrowth() {
+		LongHashSet set = new LongHashSet(4);
+		for (long i = 0; i < 10000; ++i)
+			assertTrue(set.add(i * 31));
+
+		assertEquals(10000, set.size());
+		for (long i = 0; i < 10000; ++i) {
+			assertTrue(set.contains(i * 31));
+			assertFalse(set.contains(i * 31 + 1));
+		}
+	}
+
+	@Test
+	public void testNegativeValues() {
+		LongHashSet set = new LongHashSet();
+		set.add(1);
+
+		// -1 marks empty slots and must never be found
+		assertFalse(set.contains(-1));
+		assertFalse(set.contains(Long.MIN_VALUE));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testAddNegativeValue() {
+		new LongHashSet().add(-1);
+	}
+
+	@Test
+	public void testClear() {
+		LongHashSet set = new LongHashSet(4);
+
+		// the big use grows the table, following small uses clear only used slots
+		for (long i = 0; i < 5000; ++i)
+			set.add(i);
+		set.clear();
+		assertTrue(set.isEmpty());
+		assertFalse(set.contains(0));
+
+		for (int round = 0; round < 10; ++round) {
+			for (long i = 0; i < 10; ++i)
+				assertTrue(set.add(round * 100 + i));
+			assertEquals(10, set.size());
+
+			set.clear();
+			for (long i = 0; i < 10; ++i)
+				assertFalse(set.contains(round * 100 + i));
+		}
+	}
+
+	@Test
+	public void testRandomValues() {
+		Random random = new Random(1);
+		LongHashSet set = new LongHashSet();
+		Set<Long> expected = new HashSet<Long>();
+
+		for (int round = 0; round < 100; ++round) {
+			int count = round % 10 == 0 ? 5000 : random.nextInt(200);
+			for (int i = 0; i < count; ++i) {
+				long value = random.nextInt(100000);
+				assertEquals(expected.add(value), set.add(value));
+			}
+
+			assertEquals(expected.size(), set.size());
+			for (int i = 0; i < 1000; ++i) {
+				long value = random.nextInt(100000);
+				assertEquals(expected.contains(value), set.contains(value));
+			}
+
+			set.clear();
+			expected.clear();
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package org.rdswitchboard.exporters.graph.collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests of primitive long to long map
+ *
+ * @version 1.0.0
+ */
+
+public class LongLongHashMapTest {
+	@Test
+	public void testPutAndGet() {
+		LongLongHashMap map = new LongLongHashMap();
+
+		assertTrue(map.isEmpty());
+		map.put(0, 10);
+		map.put(7, -5);
+		map.put(7, 70);
+
+		assertEquals(2, map.size());
+		assertEquals(10, map.get(0, -1));
+		assertEquals(70, map.get(7, -1));
+		assertEquals(-1, map.get(8, -1));
+	}
+
+	@Test
+	public void testGrowth() {
+		LongLongHashMap map = new LongLongHashMap(4);
+		for (long i = 0; i < 10000; ++i)
+			map.put(i * 17, i);
+
+		assertEquals(10000, map.size());
+		for (long i = 0; i < 10000; ++i) {
+			assertEquals(i, map.get(i * 17, -1));
+			assertEquals(-1, map.get(i * 17 + 1, -1));
+		}
+	}
+
+	@Test
+	public void testNegativeKeys() {
+		LongLongHashMap map = new LongLongHashMap();
+		map.put(1, 1);
+
+		// -1 marks empty slots and must never be found
+		assertEquals(5, map.get(-1, 5));
+		assertEquals(5, map.get(Long.MIN_VALUE, 5));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPutNegativeKey() {
+		new LongLongHashMap().put(-1, 0);
+	}
+
+	@Test
+	public void testClear() {
+		LongLongHashMap map = new LongLongHashMap(4);
+
+		for (long i = 0; i < 5000; ++i)
+			map.put(i, i);
+		map.clear();
+		assertTrue(map.isEmpty());
+		assertEquals(-1, map.get(0, -1));
+
+		for (int round = 0; round < 10; ++round) {
+			for (long i = 0; i < 10; ++i)
+				map.put(round * 100 + i, i);
+			assertEquals(10, map.size());
+
+			map.clear();
+			for (long i = 0; i < 10; ++i)
+				assertEquals(-1, map.get(round * 100 + i, -1));
+		}
+	}
+
+	@Test
+	public void testRandomKeys() {
+		Random random = new Random(1);
+		LongLongHashMap map = new LongLongHashMap();
+		Map<Long, Long> expected = new HashMap<Long, Long>();
+
+		for (int round = 0; round < 100; ++round) {
+			int count = round % 10 == 0 ? 5000 : random.nextInt(200);
+			for (int i = 0; i < count; ++i) {
+				long key = random.nextInt(100000);
+				map.put(key, i);
+				expected.put(key, (long) i);
+			}
+
+			assertEquals(expected.size(), map.size());
+			for (int i = 0; i < 1000; ++i) {
+				long key = random.nextInt(100000);
+				Long value = expected.get(key);
+				assertEquals(null != value ? value : -1L, map.get(key, -1));
+			}
+
+			map.clear();
+			expected.clear();
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package org.rdswitchboard.exporters.graph.sink;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of the sink, writing documents into local folder
+ *
+ * @version 1.0.0
+ */
+
+public class FileSinkTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testLinks() throws IOException {
+		testLinks(false);
+	}
+
+	@Test
+	public void testAtomicLinks() throws IOException {
+		testLinks(true);
+	}
+
+	private void testLinks(boolean atomic) throws IOException {
+		FileSink sink = new FileSink(folder.getRoot().getPath(), ".gz", atomic);
+
+		// the alias of the previous export is a plain file, which must be replaced
+		Path existing = getPath("ands/1.json.gz");
+		Files.createDirectories(existing.getParent());
+		Files.write(existing, "old".getBytes(StandardCharsets.UTF_8));
+
+		write(sink, "first", "dara/1.json", "ands/1.json", "nci/1.json");
+		write(sink, "second", "dara/2.json", "ands/2.json");
+		sink.close();
+
+		// aliases are hard links to the canonical file
+		assertEquals("first", read("ands/1.json.gz"));
+		assertTrue(Files.isSameFile(getPath("dara/1.json.gz"), getPath("ands/1.json.gz")));
+		assertTrue(Files.isSameFile(getPath("dara/1.json.gz"), getPath("nci/1.json.gz")));
+		assertTrue(Files.isSameFile(getPath("dara/2.json.gz"), getPath("ands/2.json.gz")));
+
+		// writing the canonical file again replaces it, the old links keep the old content
+		write(sink, "changed", "dara/1.json");
+		assertEquals("changed", read("dara/1.json.gz"));
+		assertEquals("first", read("ands/1.json.gz"));
+
+		// no temporary files are left
+		assertEquals(Arrays.asList("1.json.gz", "2.json.gz"), list("ands"));
+	}
+
+	private Path getPath(String name) {
+		return new File(folder.getRoot(), name).toPath();
+	}
+
+	private String read(String name) throws IOException {
+		return new String(Files.readAllBytes(getPath(name)), StandardCharsets.UTF_8);
+	}
+
+	private List<String> list(String name) {
+		String[] files = getPath(name).toFile().list();
+		Arrays.sort(files);
+		return Arrays.asList(files);
+	}
+
+	private static void write(DocumentSink sink, String document, String... names) throws IOException {
+		byte[] data = document.getBytes(StandardCharsets.UTF_8);
+		sink.write(Arrays.asList(names), data, 0, data.length);
+	}
+}
@@ -0,0 +1,128 @@
+package org.rdswitchboard.exporters.graph.sink;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Tests of newline delimited JSON sink
+ *
+ * @version 1.1.0
+ */
+
+public class NdjsonSinkTest {
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testLines() throws IOException {
+		NdjsonSink sink = new NdjsonSink(folder.getRoot().getPath(), "export", 1024 * 1024);
+		write(sink, "{\"nodes\":[{\"id\":1}]}", "dara/10.1%2F0.json", "ands/id-0.json");
+
+		// names are escaped and encoded as UTF-8
+		String name = "ands/\"quoted\\\u0001é中😀.json";
+		write(sink, "{\"nodes\":[{\"id\":2}]}", name);
+		sink.close();
+
+		List<String> lines = readLines(new File(folder.getRoot(), "export-000001" + NdjsonSink.EXTENSION));
+		assertEquals(2, lines.size());
+
+		JsonNode first = MAPPER.readTree(lines.get(0));
+		assertEquals(2, first.get("names").size());
+		assertEquals("dara/10.1%2F0.json", first.get("names").get(0).asText());
+		assertEquals("ands/id-0.json", first.get("names").get(1).asText());
+		assertEquals(1, first.get("graph").get("nodes").get(0).get("id").asInt());
+
+		JsonNode second = MAPPER.readTree(lines.get(1));
+		assertEquals(name, second.get("names").get(0).asText());
+	}
+
+	@Test
+	public void testRolling() throws IOException {
+		NdjsonSink sink = new NdjsonSink(folder.getRoot().getPath(), "export", 100);
+		for (int i = 0; i < 5; ++i)
+			write(sink, "{\"nodes\":[{\"id\":" + i + ",\"title\":\"" + repeat('x', 40) + "\"}]}", "dara/" + i + ".json");
+
+		// the file over the maximum size is rolled before the next document
+		assertTrue(new File(folder.getRoot(), "export-000004" + NdjsonSink.EXTENSION).exists());
+		assertTrue(new File(folder.getRoot(), "export-000005" + NdjsonSink.EXTENSION + ".part").exists());
+
+		// the flushed file is forced to disk, but not completed
+		sink.flush();
+		File part = new File(folder.getRoot(), "export-000005" + NdjsonSink.EXTENSION + ".part");
+		assertTrue(part.exists());
+		assertEquals("export-000005" + NdjsonSink.EXTENSION, sink.getFlushedFile());
+		assertEquals(part.length(), sink.getFlushedSize());
+
+		write(sink, "{\"nodes\":[]}", "dara/5.json");
+		sink.close();
+
+		List<String> names = new ArrayList<String>();
+		for (int i = 1; i <= 6; ++i)
+			for (String line : readLines(new File(folder.getRoot(), String.format("export-%06d%s", i, NdjsonSink.EXTENSION))))
+				names.add(MAPPER.readTree(line).get("names").get(0).asText());
+
+		assertEquals(Arrays.asList("dara/0.json", "dara/1.json", "dara/2.json", "dara/3.json", "dara/4.json", "dara/5.json"), names);
+	}
+
+	@Test
+	public void testResume() throws IOException {
+		NdjsonSink sink = new NdjsonSink(folder.getRoot().getPath(), "export", 1024 * 1024);
+		write(sink, "{\"nodes\":[{\"id\":0}]}", "dara/0.json");
+		sink.flush();
+		String file = sink.getFlushedFile();
+		long size = sink.getFlushedSize();
+
+		// the interrupted export has written a partial line after the checkpoint
+		write(sink, "{\"nodes\":[{\"id\":1}]}", "dara/1.json");
+		sink.flush();
+		try (FileChannel channel = FileChannel.open(new File(folder.getRoot(), file + ".part").toPath(), StandardOpenOption.WRITE)) {
+			channel.truncate(sink.getFlushedSize() - 5);
+		}
+
+		NdjsonSink resumed = new NdjsonSink(folder.getRoot().getPath(), "resumed", 1024 * 1024);
+		resumed.resume(file, size);
+		write(resumed, "{\"nodes\":[{\"id\":1}]}", "dara/1.json");
+		resumed.close();
+
+		// the resumed export continues the file from the checkpoint and completes it
+		List<String> names = new ArrayList<String>();
+		for (String line : readLines(new File(folder.getRoot(), file)))
+			names.add(MAPPER.readTree(line).get("names").get(0).asText());
+		assertEquals(Arrays.asList("dara/0.json", "dara/1.json"), names);
+		assertEquals(1, folder.getRoot().list().length);
+	}
+
+	private static void write(DocumentSink sink, String document, String... names) throws IOException {
+		byte[] data = document.getBytes(StandardCharsets.UTF_8);
+		sink.write(Arrays.asList(names), data, 0, data.length);
+	}
+
+	private static List<String> readLines(File file) throws IOException {
+		return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+	}
+
+	private static String repeat(char c, int count) {
+		char[] chars = new char[count];
+		Arrays.fill(chars, c);
+		return new String(chars);
+	}
+}
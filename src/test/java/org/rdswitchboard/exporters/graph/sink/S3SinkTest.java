@@ -0,0 +1,218 @@
+package org.rdswitchboard.exporters.graph.sink;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.rdswitchboard.exporters.graph.metrics.Metrics;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+
+/**
+ * Tests of S3 sink against in-memory S3 bucket
+ *
+ * @version 1.0.0
+ */
+
+public class S3SinkTest {
+	private static final String BUCKET = "bucket";
+	private static final String KEY = "graph/";
+
+	@Test
+	public void testUploadAndAliases() throws IOException {
+		FakeS3 s3 = new FakeS3();
+		S3Sink sink = createSink(s3, 2, 0, false, "gzip");
+
+		write(sink, "first", "dara/1.json", "ands/1.json", "nci/1.json");
+		write(sink, "second", "dara/2.smile");
+		sink.flush();
+
+		// the data is uploaded once, aliases are copied on the server side
+		assertEquals(2, s3.puts);
+		assertEquals(2, s3.copies);
+		assertEquals("first", s3.getContent("dara/1.json"));
+		assertEquals("first", s3.getContent("ands/1.json"));
+		assertEquals("first", s3.getContent("nci/1.json"));
+		assertEquals("second", s3.getContent("dara/2.smile"));
+
+		assertEquals("gzip", s3.objects.get(KEY + "dara/1.json").metadata.getContentEncoding());
+		assertEquals("application/json; charset=UTF-8", s3.objects.get(KEY + "dara/1.json").metadata.getContentType());
+		assertEquals("application/x-jackson-smile", s3.objects.get(KEY + "dara/2.smile").metadata.getContentType());
+
+		sink.close();
+		assertTrue(sink.getFailures().isEmpty());
+	}
+
+	@Test
+	public void testRetries() throws IOException {
+		FakeS3 s3 = new FakeS3();
+		s3.failures = 2;
+		S3Sink sink = createSink(s3, 1, 2, false, null);
+
+		write(sink, "data", "dara/1.json");
+		sink.close();
+
+		assertEquals(3, s3.puts);
+		assertEquals("data", s3.getContent("dara/1.json"));
+		assertTrue(sink.getFailures().isEmpty());
+	}
+
+	@Test
+	public void testFailures() throws IOException {
+		FakeS3 s3 = new FakeS3();
+		s3.failures = Integer.MAX_VALUE;
+		S3Sink sink = createSink(s3, 1, 1, false, null);
+
+		write(sink, "data", "dara/1.json", "ands/1.json");
+		sink.close();
+
+		// the failed document and all it's aliases are reported
+		assertEquals(2, s3.puts);
+		assertEquals(0, s3.copies);
+		assertEquals(2, sink.getFailures().size());
+		assertTrue(sink.getFailures().get(0).startsWith("dara/1.json: "));
+		assertTrue(sink.getFailures().get(1).startsWith("ands/1.json: "));
+	}
+
+	@Test
+	public void testUnchangedObjects() throws IOException {
+		FakeS3 s3 = new FakeS3();
+		s3.store(KEY + "dara/1.json", "same");
+		s3.store(KEY + "ands/1.json", "same");
+		s3.store(KEY + "dara/2.json", "old");
+		S3Sink sink = createSink(s3, 1, 0, true, null);
+
+		write(sink, "same", "dara/1.json", "ands/1.json");
+		write(sink, "new", "dara/2.json", "ands/2.json");
+		sink.close();
+
+		// objects with the same ETag are neither uploaded nor copied
+		assertEquals(2, sink.getUnchanged());
+		assertEquals(1, s3.puts);
+		assertEquals(1, s3.copies);
+		assertEquals("new", s3.getContent("dara/2.json"));
+		assertEquals("new", s3.getContent("ands/2.json"));
+	}
+
+	@Test
+	public void testUploaderError() throws IOException {
+		FakeS3 s3 = new FakeS3();
+		s3.error = new AssertionError("uploader error");
+		S3Sink sink = createSink(s3, 1, 3, false, null);
+
+		write(sink, "data", "dara/1.json");
+		try {
+			sink.flush();
+			fail("flush must report the uploader error");
+		} catch (IOException e) {
+			assertTrue(e.getCause() instanceof AssertionError);
+		}
+
+		try {
+			sink.close();
+			fail("close must report the uploader error");
+		} catch (IOException e) {
+			assertEquals(1, sink.getFailures().size());
+		}
+	}
+
+	private static S3Sink createSink(FakeS3 s3, int threads, int retries, boolean checkETag, String contentEncoding) {
+		AmazonS3 client = (AmazonS3) Proxy.newProxyInstance(S3SinkTest.class.getClassLoader(),
+				new Class<?>[] { AmazonS3.class }, s3);
+
+		return new S3Sink(client, BUCKET, KEY, false, threads, 10, retries, checkETag, contentEncoding, new Metrics());
+	}
+
+	private static void write(DocumentSink sink, String document, String... names) throws IOException {
+		byte[] data = document.getBytes(StandardCharsets.UTF_8);
+		sink.write(Arrays.asList(names), data, 0, data.length);
+	}
+
+	/**
+	 * In-memory bucket, implementing put, copy and metadata requests of S3 client
+	 */
+	private static class FakeS3 implements InvocationHandler {
+		private final Map<String, StoredObject> objects = new HashMap<String, StoredObject>();
+		private int failures;
+		private Error error;
+		private int puts;
+		private int copies;
+
+		@Override
+		public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+			case "getObjectMetadata":
+				StoredObject object = objects.get((String) args[1]);
+				if (null == object) {
+					AmazonServiceException e = new AmazonServiceException("Not Found");
+					e.setStatusCode(404);
+					throw e;
+				}
+				return object.metadata;
+
+			case "putObject":
+				++puts;
+				if (null != error)
+					throw error;
+				if (failures > 0) {
+					--failures;
+					throw new AmazonClientException("Request failed");
+				}
+
+				PutObjectRequest put = (PutObjectRequest) args[0];
+				assertEquals(BUCKET, put.getBucketName());
+				objects.put(put.getKey(), new StoredObject(IOUtils.toByteArray(put.getInputStream()), put.getMetadata()));
+				return null;
+
+			case "copyObject":
+				++copies;
+				CopyObjectRequest copy = (CopyObjectRequest) args[0];
+				StoredObject source = objects.get(copy.getSourceKey());
+				objects.put(copy.getDestinationKey(), new StoredObject(source.data, source.metadata));
+				return null;
+
+			default:
+				throw new UnsupportedOperationException(method.getName());
+			}
+		}
+
+		private void store(String key, String content) {
+			objects.put(key, new StoredObject(content.getBytes(StandardCharsets.UTF_8), new ObjectMetadata()));
+		}
+
+		private synchronized String getContent(String name) {
+			StoredObject object = objects.get(KEY + name);
+			return null != object ? new String(object.data, StandardCharsets.UTF_8) : null;
+		}
+	}
+
+	private static class StoredObject {
+		private final byte[] data;
+		private final ObjectMetadata metadata;
+
+		private StoredObject(byte[] data, ObjectMetadata metadata) {
+			this.data = data;
+			this.metadata = metadata;
+			// the ETag of a simple object is MD5 digest of it's content
+			this.metadata.setHeader(Headers.ETAG, DigestUtils.md5Hex(data));
+		}
+	}
+}
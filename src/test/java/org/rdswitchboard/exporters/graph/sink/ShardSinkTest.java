@@ -0,0 +1,177 @@
+package org.rdswitchboard.exporters.graph.sink;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.rdswitchboard.exporters.graph.metrics.Metrics;
+
+/**
+ * Tests of the sink, packing documents into tar shards
+ *
+ * @version 1.0.1
+ */
+
+public class ShardSinkTest {
+	private static final int BLOCK_SIZE = 512;
+
+	@Test
+	public void testIndexOffsets() throws IOException {
+		MemorySink target = new MemorySink();
+		ShardSink sink = new ShardSink(target, "shards/test", ".gz", 1024 * 1024, 0, new Metrics());
+
+		String longName = "ands/" + repeat('a', 150) + ".json";
+		write(sink, "first", "dara/1.json", "ands/1.json");
+		write(sink, "second document", longName);
+		write(sink, "", "nci/3.json");
+		sink.close();
+
+		assertEquals(Arrays.asList("shards/test-000001.tar", "shards/test-000001.idx"), new ArrayList<String>(target.documents.keySet()));
+		assertTrue(target.closed);
+
+		byte[] shard = target.documents.get("shards/test-000001.tar");
+		assertEquals(0, shard.length % BLOCK_SIZE);
+
+		Map<String, long[]> index = readIndex(target.documents.get("shards/test-000001.idx"));
+		assertEquals(Arrays.asList("dara/1.json.gz", "ands/1.json.gz", longName + ".gz", "nci/3.json.gz"),
+				new ArrayList<String>(index.keySet()));
+
+		// every index entry points to the document data, aliases to the data of the canonical name
+		assertData(shard, index.get("dara/1.json.gz"), "first");
+		assertArrayEquals(index.get("dara/1.json.gz"), index.get("ands/1.json.gz"));
+		assertData(shard, index.get(longName + ".gz"), "second document");
+		assertData(shard, index.get("nci/3.json.gz"), "");
+
+		// the first header holds the canonical name and the data length in octal
+		assertEquals("dara/1.json.gz", readString(shard, 0, 100));
+		assertEquals(Long.toOctalString(5), readString(shard, 124, 12).replaceFirst("^0+", ""));
+		assertEquals("ustar", readString(shard, 257, 6));
+	}
+
+	@Test
+	public void testRolling() throws IOException {
+		MemorySink target = new MemorySink();
+		ShardSink sink = new ShardSink(target, "shards/test", "", 1024 * 1024, 2, new Metrics());
+
+		for (int i = 0; i < 5; ++i)
+			write(sink, "document " + i, "dara/" + i + ".json");
+
+		// shards are rolled by the number of documents
+		assertEquals(4, target.documents.size());
+		assertEquals(1, sink.getQueueSize());
+
+		sink.flush();
+		assertEquals(6, target.documents.size());
+		assertEquals(0, sink.getQueueSize());
+		assertEquals(1, target.flushes);
+
+		assertEquals(1, readIndex(target.documents.get("shards/test-000003.idx")).size());
+		assertData(target.documents.get("shards/test-000003.tar"),
+				readIndex(target.documents.get("shards/test-000003.idx")).get("dara/4.json"), "document 4");
+
+		// shards are rolled by the size, the document, which does not fit, starts the next shard
+		target = new MemorySink();
+		sink = new ShardSink(target, "shards/size", "", 4 * BLOCK_SIZE, 0, new Metrics());
+		write(sink, "a", "dara/a.json");
+		write(sink, "b", "dara/b.json");
+		sink.close();
+
+		assertEquals(4, target.documents.size());
+		assertTrue(readIndex(target.documents.get("shards/size-000001.idx")).containsKey("dara/a.json"));
+		assertTrue(readIndex(target.documents.get("shards/size-000002.idx")).containsKey("dara/b.json"));
+	}
+
+	@Test
+	public void testPadding() throws IOException {
+		MemorySink target = new MemorySink();
+		ShardSink sink = new ShardSink(target, "shards/test", "", 1024 * 1024, 1, new Metrics());
+		
+		String longName = "ands/" + repeat('b', 150) + ".json";
+		write(sink, repeat('q', 2 * BLOCK_SIZE), "dara/0.json", longName);
+		write(sink, "y", "dara/1.json", longName);
+		
+		// the second shard reuses the buffer, but it's padding does not hold data of the first one
+		byte[] first = target.documents.get("shards/test-000001.tar");
+		byte[] second = target.documents.get("shards/test-000002.tar");
+		assertEquals(first.length, second.length + BLOCK_SIZE);
+		long[] entry = readIndex(target.documents.get("shards/test-000002.idx")).get("dara/1.json");
+		for (int i = (int) (entry[0] + entry[1]); i < entry[0] + BLOCK_SIZE; ++i)
+			assertEquals(0, second[i]);
+		for (int i = 0; i < second.length; ++i)
+			assertTrue(second[i] != 'q');
+	}
+	
+	private static void write(DocumentSink sink, String document, String... names) throws IOException {
+		byte[] data = document.getBytes(StandardCharsets.UTF_8);
+		sink.write(Arrays.asList(names), data, 0, data.length);
+	}
+
+	private static Map<String, long[]> readIndex(byte[] data) {
+		Map<String, long[]> index = new LinkedHashMap<String, long[]>();
+		for (String line : new String(data, StandardCharsets.UTF_8).split("\n")) {
+			String[] fields = line.split("\t");
+			assertEquals(3, fields.length);
+			index.put(fields[0], new long[] { Long.parseLong(fields[1]), Long.parseLong(fields[2]) });
+		}
+
+		return index;
+	}
+
+	private static void assertData(byte[] shard, long[] entry, String expected) {
+		assertEquals(0, entry[0] % BLOCK_SIZE);
+		assertEquals(expected, new String(shard, (int) entry[0], (int) entry[1], StandardCharsets.UTF_8));
+	}
+
+	private static String readString(byte[] data, int offset, int length) {
+		int end = offset;
+		while (end < offset + length && data[end] != 0)
+			++end;
+
+		return new String(data, offset, end - offset, StandardCharsets.UTF_8);
+	}
+
+	private static String repeat(char c, int count) {
+		char[] chars = new char[count];
+		Arrays.fill(chars, c);
+		return new String(chars);
+	}
+
+	/**
+	 * Sink, keeping documents in memory in the order they have been written
+	 */
+	private static class MemorySink implements DocumentSink {
+		private final Map<String, byte[]> documents = new LinkedHashMap<String, byte[]>();
+		private int flushes;
+		private boolean closed;
+
+		@Override
+		public void write(List<String> names, byte[] data, int offset, int length) throws IOException {
+			assertEquals(1, names.size());
+			documents.put(names.get(0), Arrays.copyOfRange(data, offset, offset + length));
+		}
+
+		@Override
+		public void flush() throws IOException {
+			++flushes;
+		}
+
+		@Override
+		public int getQueueSize() {
+			return 0;
+		}
+
+		@Override
+		public void close() throws IOException {
+			closed = true;
+		}
+	}
+}